@@ -4,13 +4,14 @@ package com.ssau.chord.model.controller;
 import com.ssau.chord.model.controller.message.ControllerMessage;
 import com.ssau.chord.model.controller.message.NodeMessage;
 import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+import com.ssau.chord.model.network.MessageDispatcher;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Socket Controller-side that deals the sending and receiving of Message to/from the node
@@ -45,13 +46,18 @@ public class SocketController implements Runnable, Serializable {
             ControllerMessage message = getMessage();
             if (!connected)
                 break;
-            Executors.newCachedThreadPool().execute(() -> {
+            Runnable task = () -> {
                 try {
                     message.handle(controller);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
-            });
+            };
+            try {
+                MessageDispatcher.getDispatcher().execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
         }
     }
 
@@ -6,6 +6,8 @@ import com.ssau.chord.model.controller.message.ControllerMessage;
 import com.ssau.chord.model.controller.message.NodeMessage;
 import com.ssau.chord.model.exceptions.ConnectionErrorException;
 import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+import com.ssau.chord.model.network.MessageDispatcher;
+import com.ssau.chord.model.network.NodeThreads;
 import com.ssau.chord.model.node.Node;
 
 import java.io.IOException;
@@ -13,7 +15,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import static java.lang.System.err;
 
@@ -57,7 +59,7 @@ public class SocketNodeController implements Runnable, Serializable {
         this.out = new ObjectOutputStream(socketController.getOutputStream());
         this.in = new ObjectInputStream(socketController.getInputStream());
         this.controller = new NodeControllerCommunicator(node, this);
-        Executors.newCachedThreadPool().submit(this);
+        NodeThreads.start(this, "chord-controller");
         return controller;
     }
 
@@ -71,13 +73,18 @@ public class SocketNodeController implements Runnable, Serializable {
             NodeMessage message = getMessage();
             if (!connected)
                 break;
-            Executors.newCachedThreadPool().execute(() -> {
+            Runnable task = () -> {
                 try {
                     message.handle(controller);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
-            });
+            };
+            try {
+                MessageDispatcher.getDispatcher().execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
         }
     }
 
@@ -0,0 +1,36 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.MessageHandler;
+
+import java.io.IOException;
+
+/**
+ * Connection towards another node, created by a Transport.
+ * NodeCommunicator sends its messages through the connection, and the messages received
+ * from the other node are handled by the MessageHandler passed to start
+ */
+public interface Connection {
+
+    /**
+     * Sends the message to the other node
+     *
+     * @param message message to send
+     * @throws IOException if an I/O error occurs
+     */
+    void sendMessage(Message message) throws IOException;
+
+    /**
+     * Starts receiving the messages: nothing is handled before this call, so the NodeCommunicator
+     * is completely initialized when its first message arrives
+     *
+     * @param messageHandler responsible of handling the received messages
+     */
+    void start(MessageHandler messageHandler);
+
+    /**
+     * Closes the connection
+     */
+    void close();
+}
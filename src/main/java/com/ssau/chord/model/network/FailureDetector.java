@@ -0,0 +1,138 @@
+package com.ssau.chord.model.network;
+
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.err;
+
+/**
+ * Phi accrual failure detector of the outgoing connections of a SocketManager (successors, predecessor, fingers).
+ * Every chord.fd.intervalMillis milliseconds a PingRequest is sent on each connection, and the arrival times
+ * of the PingResponses are recorded. The suspicion level phi of a node grows with the time since its last
+ * response, compared with the distribution of the previous intervals; when it exceeds chord.fd.threshold the
+ * node is suspected: its connection is closed and the node is removed as if it had disconnected.
+ * <p>
+ * chord.fd.pauseMillis is added to the mean interval, to tolerate short pauses of the other node without
+ * suspecting it. With chord.fd.intervalMillis equal to 0 the detector is disabled
+ */
+class FailureDetector {
+    static final long INTERVAL = Long.getLong("chord.fd.intervalMillis", 500);
+    static final double THRESHOLD = Double.parseDouble(System.getProperty("chord.fd.threshold", "8"));
+    private static final long ACCEPTABLE_PAUSE = Long.getLong("chord.fd.pauseMillis", 500);
+    private static final long MIN_STD_DEVIATION = Long.getLong("chord.fd.minStdDevMillis", 100);
+    private static final int WINDOW = 100;
+    private static final ScheduledExecutorService scheduler = NodeThreads.newScheduler("chord-failure-detector");
+
+    private final SocketManager socketManager;
+    private final Map<Long, HeartbeatHistory> histories = new ConcurrentHashMap<>();
+    private long lastTick = System.nanoTime();
+
+    /**
+     * @param socketManager socketManager whose connections are monitored
+     */
+    FailureDetector(SocketManager socketManager) {
+        this.socketManager = socketManager;
+    }
+
+    /**
+     * Starts sending the heartbeats, if the detector is enabled
+     */
+    void start() {
+        if (INTERVAL > 0)
+            scheduler.scheduleWithFixedDelay(this::tick, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks the suspicion level of every connection, then sends the heartbeats to the nodes not suspected
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        //if this node has been paused the missing responses are not a fault of the other nodes
+        boolean paused = TimeUnit.NANOSECONDS.toMillis(now - lastTick) > 2 * INTERVAL + ACCEPTABLE_PAUSE;
+        lastTick = now;
+        Map<Long, NodeCommunicator> connections = socketManager.getOpenConnections();
+        histories.keySet().retainAll(connections.keySet());
+        for (Map.Entry<Long, NodeCommunicator> entry : connections.entrySet()) {
+            Long nodeId = entry.getKey();
+            NodeCommunicator communicator = entry.getValue();
+            HeartbeatHistory history = histories.computeIfAbsent(nodeId, id -> new HeartbeatHistory(now));
+            if (paused)
+                history.reset(now);
+            else if (history.phi(now) > THRESHOLD) {
+                err.println("Node suspected: " + nodeId);
+                histories.remove(nodeId);
+                communicator.suspected();
+                socketManager.removeNode(nodeId, communicator);
+                continue;
+            }
+            communicator.ping().thenRun(() -> history.heartbeat(System.nanoTime()));
+        }
+    }
+
+    /**
+     * Intervals between the last WINDOW heartbeats of a node, in milliseconds
+     */
+    static final class HeartbeatHistory {
+        private final double[] intervals = new double[WINDOW];
+        private int size;
+        private int next;
+        private double sum;
+        private double squaredSum;
+        private long lastArrival;
+
+        HeartbeatHistory(long now) {
+            reset(now);
+        }
+
+        /**
+         * Forgets the recorded intervals: the history restarts with the expected interval
+         *
+         * @param now time of the reset
+         */
+        synchronized void reset(long now) {
+            size = 0;
+            next = 0;
+            sum = 0;
+            squaredSum = 0;
+            lastArrival = now;
+            add(INTERVAL);
+        }
+
+        synchronized void heartbeat(long now) {
+            add(TimeUnit.NANOSECONDS.toMicros(now - lastArrival) / 1000.0);
+            lastArrival = now;
+        }
+
+        private void add(double interval) {
+            if (size == WINDOW) {
+                sum -= intervals[next];
+                squaredSum -= intervals[next] * intervals[next];
+            } else
+                size++;
+            intervals[next] = interval;
+            sum += interval;
+            squaredSum += interval * interval;
+            next = (next + 1) % WINDOW;
+        }
+
+        /**
+         * @param now current time
+         * @return the suspicion level, -log10 of the probability that the next heartbeat arrives after now
+         * (logistic approximation of the normal distribution)
+         */
+        synchronized double phi(long now) {
+            double elapsed = TimeUnit.NANOSECONDS.toMicros(now - lastArrival) / 1000.0;
+            double mean = sum / size;
+            double stdDeviation = Math.max(Math.sqrt(Math.max(squaredSum / size - mean * mean, 0)), MIN_STD_DEVIATION);
+            double y = (elapsed - mean - ACCEPTABLE_PAUSE) / stdDeviation;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            if (elapsed > mean + ACCEPTABLE_PAUSE)
+                return -Math.log10(e / (1.0 + e));
+            else
+                return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+    }
+}
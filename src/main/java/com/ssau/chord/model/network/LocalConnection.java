@@ -0,0 +1,98 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.MessageHandler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * One side of a connection of the LocalTransport. The sent messages are dispatched to the handler of the
+ * peer; those that arrive before the peer is started are queued until its start
+ */
+class LocalConnection implements Connection {
+    private final LocalConnection peer;
+    private final boolean connectionIn;
+    private final Executor orderedLane = MessageDispatcher.getDispatcher().newOrderedLane();
+    /**
+     * messages received before start, guarded by this
+     */
+    private final Queue<Message> received = new ArrayDeque<>();
+    private MessageHandler messageHandler;
+    private volatile boolean connected = true;
+
+    /**
+     * Creates the outgoing side of a new connection, together with its incoming side
+     */
+    LocalConnection() {
+        this.connectionIn = false;
+        this.peer = new LocalConnection(this);
+    }
+
+    private LocalConnection(LocalConnection peer) {
+        this.connectionIn = true;
+        this.peer = peer;
+    }
+
+    /**
+     * @return the other side of the connection
+     */
+    LocalConnection getPeer() {
+        return peer;
+    }
+
+    @Override
+    public void sendMessage(Message message) throws IOException {
+        if (!connected || !peer.connected)
+            throw new IOException("Connection closed");
+        peer.receive(message);
+    }
+
+    private void receive(Message message) {
+        MessageHandler handler;
+        synchronized (this) {
+            if (messageHandler == null) {
+                received.add(message);
+                return;
+            }
+            handler = messageHandler;
+        }
+        MessageDispatcher.getDispatcher().dispatch(message, handler, this, orderedLane);
+    }
+
+    @Override
+    public void start(MessageHandler messageHandler) {
+        synchronized (this) {
+            this.messageHandler = messageHandler;
+            Message message;
+            while ((message = received.poll()) != null)
+                MessageDispatcher.getDispatcher().dispatch(message, messageHandler, this, orderedLane);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The peer is notified as if the other node had closed the socket
+     */
+    @Override
+    public void close() {
+        if (!connected)
+            return;
+        connected = false;
+        peer.closedByPeer();
+    }
+
+    private void closedByPeer() {
+        boolean wasConnected = connected;
+        connected = false;
+        MessageHandler handler;
+        synchronized (this) {
+            handler = messageHandler;
+        }
+        if (wasConnected && !connectionIn && handler != null)
+            MessageDispatcher.getDispatcher().disconnected(handler);
+    }
+}
@@ -0,0 +1,48 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.exceptions.ConnectionErrorException;
+import com.ssau.chord.model.node.Node;
+import com.ssau.chord.model.node.NodeInterface;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport between nodes running in the same JVM: no socket and no thread per connection, the message
+ * objects are passed directly to the MessageDispatcher of the receiving side. The listening nodes are found
+ * by (ipAddress, socketPort), so many nodes can run with different ipAddresses and the same port.
+ * Used to measure routing and stabilization on large rings without the cost of TCP
+ */
+public class LocalTransport implements Transport {
+    private final Map<String, Node> listeners = new ConcurrentHashMap<>();
+
+    private static String address(String ipAddress, int socketPort) {
+        return ipAddress + ":" + socketPort;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The other side of the connection is passed to the SocketManager of the listening node with
+     * the ipAddress of node, as if it had been accepted from the network
+     */
+    @Override
+    public Connection connect(NodeInterface node, String ipAddress, int socketPort) throws ConnectionErrorException {
+        Node listener = listeners.get(address(ipAddress, socketPort));
+        if (listener == null)
+            throw new ConnectionErrorException();
+        LocalConnection connection = new LocalConnection();
+        listener.getSocketManager().createConnection(connection.getPeer(), node.getIpAddress());
+        return connection;
+    }
+
+    @Override
+    public void listen(Node node, int socketPort) {
+        listeners.put(address(node.getIpAddress(), socketPort), node);
+    }
+
+    @Override
+    public void stopListening(Node node) {
+        listeners.remove(address(node.getIpAddress(), node.getSocketPort()), node);
+    }
+}
@@ -0,0 +1,504 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.network.message.*;
+import com.ssau.chord.model.node.HashAlgorithm;
+import com.ssau.chord.model.node.NextHop;
+import com.ssau.chord.model.node.NodeRef;
+import com.ssau.chord.model.node.NodeInterface;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of the messages exchanged between nodes.
+ * Every message is sent as a frame:
+ * <pre>
+ * int length | byte version | byte type | long lockId | payload
+ * </pre>
+ * where length counts the bytes after the length field itself. Node references are encoded as
+ * (long nodeId, ip, int port), with the ip written in 4 bytes when it is an IPv4 address.
+ * The values stored in the network can be String, Long, Integer or byte[]; other values are sent with Java
+ * serialization only if it is enabled with the system property chord.codec.serializedValues (off by default),
+ * and a node where it is not enabled rejects the frames that contain them, so it never deserializes
+ * the bytes received from the network.
+ * <p>
+ * The version is the one of the protocol (HelloMessage.PROTOCOL_VERSION), which is incremented every time
+ * the layout of a frame changes, so a frame of another version is rejected instead of being misread
+ * <p>
+ * An instance keeps the output buffer of one connection, so encode must not be called concurrently
+ */
+class MessageCodec {
+    static final byte VERSION = (byte) HelloMessage.PROTOCOL_VERSION;
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final byte FIND_SUCCESSOR_REQUEST = 1;
+    private static final byte FIND_SUCCESSOR_RESPONSE = 2;
+    private static final byte NOTIFY_REQUEST = 3;
+    private static final byte TERMINATED_METHOD = 4;
+    private static final byte CLOSE_REQUEST = 5;
+    private static final byte GET_PREDECESSOR_REQUEST = 6;
+    private static final byte GET_PREDECESSOR_RESPONSE = 7;
+    //8-11 were the GetDimFingerTable and GetInitialSocketPort messages, replaced by the hello
+    private static final byte GET_SUCCESSOR_LIST_REQUEST = 12;
+    private static final byte GET_SUCCESSOR_LIST_RESPONSE = 13;
+    private static final byte ADD_KEY_REQUEST = 14;
+    private static final byte ADD_KEY_RESPONSE = 15;
+    private static final byte FIND_KEY_REQUEST = 16;
+    private static final byte FIND_KEY_RESPONSE = 17;
+    private static final byte BUSY_RESPONSE = 18;
+    private static final byte PING_REQUEST = 19;
+    private static final byte PING_RESPONSE = 20;
+    private static final byte HELLO = 21;
+    private static final byte HELLO_RESPONSE = 22;
+    private static final byte NEXT_HOP_REQUEST = 23;
+    private static final byte NEXT_HOP_RESPONSE = 24;
+    private static final byte ROUTE_LOOKUP_REQUEST = 25;
+    private static final byte LOOKUP_RESULT = 26;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_LONG = 2;
+    private static final byte VALUE_INTEGER = 3;
+    private static final byte VALUE_BYTES = 4;
+    private static final byte VALUE_SERIALIZED = 5;
+
+    private static final byte IP_V4 = 4;
+    private static final byte IP_STRING = 0;
+
+    private static final byte OWNER = 1;
+    private static final byte PREDECESSOR_KNOWN = 2;
+
+    private static volatile boolean serializedValues = Boolean.getBoolean("chord.codec.serializedValues");
+
+    private ByteBuffer output = ByteBuffer.allocate(256);
+
+    /**
+     * @param enabled true to send and accept the stored values that need Java serialization
+     */
+    static void setSerializedValues(boolean enabled) {
+        serializedValues = enabled;
+    }
+
+    /**
+     * Encodes the message in a frame
+     *
+     * @param message message to encode
+     * @return buffer containing the whole frame (length field included) between position and limit,
+     * valid until the next call of encode
+     * @throws IOException if a stored value can not be serialized
+     */
+    ByteBuffer encode(Message message) throws IOException {
+        output.clear();
+        output.putInt(0); //length, written at the end
+        output.put(VERSION);
+        if (message instanceof FindSuccessorRequest) {
+            FindSuccessorRequest request = (FindSuccessorRequest) message;
+            putHeader(FIND_SUCCESSOR_REQUEST, request.getLockId());
+            putLong(request.getId());
+            putPriority(request.getPriority());
+        } else if (message instanceof FindSuccessorResponse) {
+            FindSuccessorResponse response = (FindSuccessorResponse) message;
+            putHeader(FIND_SUCCESSOR_RESPONSE, response.getLockId());
+            putNode(response.getNode());
+            putPriority(response.getPriority());
+        } else if (message instanceof NotifyRequest) {
+            NotifyRequest request = (NotifyRequest) message;
+            putHeader(NOTIFY_REQUEST, request.getLockId());
+            putNode(request.getNode());
+        } else if (message instanceof TerminatedMethodMessage) {
+            putHeader(TERMINATED_METHOD, ((TerminatedMethodMessage) message).getLockId());
+        } else if (message instanceof CloseRequest) {
+            putHeader(CLOSE_REQUEST, ((CloseRequest) message).getLockId());
+        } else if (message instanceof GetPredecessorRequest) {
+            putHeader(GET_PREDECESSOR_REQUEST, ((GetPredecessorRequest) message).getLockId());
+        } else if (message instanceof GetPredecessorResponse) {
+            GetPredecessorResponse response = (GetPredecessorResponse) message;
+            putHeader(GET_PREDECESSOR_RESPONSE, response.getLockId());
+            putNode(response.getNode());
+        } else if (message instanceof GetSuccessorListRequest) {
+            putHeader(GET_SUCCESSOR_LIST_REQUEST, ((GetSuccessorListRequest) message).getLockId());
+        } else if (message instanceof GetSuccessorListResponse) {
+            GetSuccessorListResponse response = (GetSuccessorListResponse) message;
+            putHeader(GET_SUCCESSOR_LIST_RESPONSE, response.getLockId());
+            List<NodeInterface> successorList = response.getSuccessorList();
+            putInt(successorList.size());
+            for (NodeInterface successor : successorList)
+                putNode(successor);
+        } else if (message instanceof AddKeyRequest) {
+            AddKeyRequest request = (AddKeyRequest) message;
+            putHeader(ADD_KEY_REQUEST, request.getLockId());
+            putLong(request.getKeyValue().getKey());
+            putValue(request.getKeyValue().getValue());
+            ensureCapacity(1);
+            output.put((byte) (request.isOwnerOnly() ? 1 : 0));
+        } else if (message instanceof AddKeyResponse) {
+            AddKeyResponse response = (AddKeyResponse) message;
+            putHeader(ADD_KEY_RESPONSE, response.getLockId());
+            putNode(response.getNode());
+            putOwnership(response.getPredecessorId(), response.isOwner());
+        } else if (message instanceof FindKeyRequest) {
+            FindKeyRequest request = (FindKeyRequest) message;
+            putHeader(FIND_KEY_REQUEST, request.getLockId());
+            putLong(request.getKey());
+        } else if (message instanceof FindKeyResponse) {
+            FindKeyResponse response = (FindKeyResponse) message;
+            putHeader(FIND_KEY_RESPONSE, response.getLockId());
+            putValue(response.getValue());
+            putOwnership(response.getPredecessorId(), response.isOwner());
+        } else if (message instanceof BusyResponse) {
+            putHeader(BUSY_RESPONSE, message.getLockId());
+        } else if (message instanceof PingRequest) {
+            putHeader(PING_REQUEST, message.getLockId());
+        } else if (message instanceof PingResponse) {
+            putHeader(PING_RESPONSE, message.getLockId());
+        } else if (message instanceof HelloMessage) {
+            HelloMessage hello = (HelloMessage) message;
+            putHeader(HELLO, hello.getLockId());
+            putInt(hello.getVersion());
+            putLong(hello.getNodeId());
+            putInt(hello.getSocketPort());
+            putInt(hello.getDimFingerTable());
+            putLong(hello.getTargetNodeId());
+        } else if (message instanceof HelloResponse) {
+            HelloResponse response = (HelloResponse) message;
+            putHeader(HELLO_RESPONSE, response.getLockId());
+            putInt(response.getVersion());
+            putLong(response.getNodeId());
+            putInt(response.getDimFingerTable());
+            ensureCapacity(1);
+            output.put((byte) response.getHashAlgorithm().ordinal());
+        } else if (message instanceof NextHopRequest) {
+            NextHopRequest request = (NextHopRequest) message;
+            putHeader(NEXT_HOP_REQUEST, request.getLockId());
+            putLong(request.getId());
+            putPriority(request.getPriority());
+        } else if (message instanceof NextHopResponse) {
+            NextHopResponse response = (NextHopResponse) message;
+            putHeader(NEXT_HOP_RESPONSE, response.getLockId());
+            NextHop nextHop = response.getNextHop();
+            ensureCapacity(1);
+            output.put((byte) (nextHop.isDone() ? 1 : 0));
+            putInt(nextHop.getNodes().size());
+            for (NodeInterface node : nextHop.getNodes())
+                putNode(node);
+            putPriority(response.getPriority());
+        } else if (message instanceof RouteLookupRequest) {
+            RouteLookupRequest request = (RouteLookupRequest) message;
+            putHeader(ROUTE_LOOKUP_REQUEST, request.getLockId());
+            putLong(request.getId());
+            putNode(request.getOrigin());
+            putInt(request.getHops());
+            putPriority(request.getPriority());
+        } else if (message instanceof LookupResult) {
+            LookupResult result = (LookupResult) message;
+            putHeader(LOOKUP_RESULT, result.getLockId());
+            putNode(result.getNode());
+            putPriority(result.getPriority());
+        } else {
+            throw new NotSerializableException(message.getClass().getName());
+        }
+        output.putInt(0, output.position() - Integer.BYTES);
+        output.flip();
+        return output;
+    }
+
+    /**
+     * Decodes a frame
+     *
+     * @param frame buffer containing the frame without the length field
+     * @return the decoded message
+     * @throws IOException if the frame has a different version or is malformed
+     */
+    static Message decode(ByteBuffer frame) throws IOException {
+        try {
+            byte version = frame.get();
+            if (version != VERSION)
+                throw new IOException("Unsupported protocol version " + version);
+            byte type = frame.get();
+            Long lockId = frame.getLong();
+            switch (type) {
+                case FIND_SUCCESSOR_REQUEST:
+                    return new FindSuccessorRequest(frame.getLong(), getPriority(frame), lockId);
+                case FIND_SUCCESSOR_RESPONSE:
+                    return new FindSuccessorResponse(getNode(frame), getPriority(frame), lockId);
+                case NOTIFY_REQUEST:
+                    return new NotifyRequest(getNode(frame), lockId);
+                case TERMINATED_METHOD:
+                    return new TerminatedMethodMessage(lockId);
+                case CLOSE_REQUEST:
+                    return new CloseRequest(lockId);
+                case GET_PREDECESSOR_REQUEST:
+                    return new GetPredecessorRequest(lockId);
+                case GET_PREDECESSOR_RESPONSE:
+                    return new GetPredecessorResponse(getNode(frame), lockId);
+                case GET_SUCCESSOR_LIST_REQUEST:
+                    return new GetSuccessorListRequest(lockId);
+                case GET_SUCCESSOR_LIST_RESPONSE:
+                    int size = getSize(frame);
+                    List<NodeInterface> successorList = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++)
+                        successorList.add(getNode(frame));
+                    return new GetSuccessorListResponse(successorList, lockId);
+                case ADD_KEY_REQUEST:
+                    Map.Entry<Long, Object> keyValue = new AbstractMap.SimpleEntry<>(frame.getLong(), getValue(frame));
+                    return new AddKeyRequest(keyValue, frame.get() != 0, lockId);
+                case ADD_KEY_RESPONSE:
+                    NodeInterface storingNode = getNode(frame);
+                    byte addOwnership = frame.get();
+                    return new AddKeyResponse(storingNode, getPredecessorId(frame, addOwnership),
+                            (addOwnership & OWNER) != 0, lockId);
+                case FIND_KEY_REQUEST:
+                    return new FindKeyRequest(lockId, frame.getLong());
+                case FIND_KEY_RESPONSE:
+                    Object value = getValue(frame);
+                    byte findOwnership = frame.get();
+                    return new FindKeyResponse(value, getPredecessorId(frame, findOwnership),
+                            (findOwnership & OWNER) != 0, lockId);
+                case BUSY_RESPONSE:
+                    return new BusyResponse(lockId);
+                case PING_REQUEST:
+                    return new PingRequest(lockId);
+                case PING_RESPONSE:
+                    return new PingResponse(lockId);
+                case HELLO:
+                    return new HelloMessage(lockId, frame.getInt(), frame.getLong(), frame.getInt(), frame.getInt(),
+                            frame.getLong());
+                case HELLO_RESPONSE:
+                    return new HelloResponse(lockId, frame.getInt(), frame.getLong(), frame.getInt(),
+                            getHashAlgorithm(frame));
+                case NEXT_HOP_REQUEST:
+                    return new NextHopRequest(frame.getLong(), getPriority(frame), lockId);
+                case NEXT_HOP_RESPONSE:
+                    boolean done = frame.get() != 0;
+                    int hops = getSize(frame);
+                    List<NodeInterface> nodes = new ArrayList<>(hops);
+                    for (int i = 0; i < hops; i++)
+                        nodes.add(getNode(frame));
+                    return new NextHopResponse(new NextHop(done, nodes), getPriority(frame), lockId);
+                case ROUTE_LOOKUP_REQUEST:
+                    return new RouteLookupRequest(frame.getLong(), getNode(frame), frame.getInt(), getPriority(frame),
+                            lockId);
+                case LOOKUP_RESULT:
+                    return new LookupResult(getNode(frame), getPriority(frame), lockId);
+                default:
+                    throw new IOException("Unknown message type " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated frame");
+        }
+    }
+
+    private void putHeader(byte type, Long lockId) {
+        output.put(type);
+        output.putLong(lockId);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (output.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + bytes));
+            output.flip();
+            bigger.put(output);
+            output = bigger;
+        }
+    }
+
+    private void putInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        output.putInt(value);
+    }
+
+    private void putLong(long value) {
+        ensureCapacity(Long.BYTES);
+        output.putLong(value);
+    }
+
+    private void putBytes(byte[] bytes) {
+        putInt(bytes.length);
+        ensureCapacity(bytes.length);
+        output.put(bytes);
+    }
+
+    private void putNode(NodeInterface node) {
+        ensureCapacity(1);
+        if (node == null) {
+            output.put((byte) 0);
+            return;
+        }
+        output.put((byte) 1);
+        putLong(node.getNodeId());
+        putIpAddress(node.getIpAddress());
+        putInt(node.getSocketPort());
+    }
+
+    /**
+     * Writes if the node owns the key, and the nodeId of its predecessor if it is known
+     */
+    private void putOwnership(Long predecessorId, boolean owner) {
+        ensureCapacity(1);
+        output.put((byte) ((owner ? OWNER : 0) | (predecessorId != null ? PREDECESSOR_KNOWN : 0)));
+        if (predecessorId != null)
+            putLong(predecessorId);
+    }
+
+    /**
+     * Writes the priority of a lookup, which is kept by every node of its path
+     */
+    private void putPriority(Priority priority) {
+        ensureCapacity(1);
+        output.put((byte) priority.ordinal());
+    }
+
+    private void putIpAddress(String ipAddress) {
+        byte[] ipv4 = parseIpv4(ipAddress);
+        ensureCapacity(1 + IP_V4);
+        if (ipv4 != null) {
+            output.put(IP_V4);
+            output.put(ipv4);
+        } else {
+            output.put(IP_STRING);
+            putBytes(ipAddress.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void putValue(Object value) throws IOException {
+        ensureCapacity(1);
+        if (value == null) {
+            output.put(VALUE_NULL);
+        } else if (value instanceof String) {
+            output.put(VALUE_STRING);
+            putBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Long) {
+            output.put(VALUE_LONG);
+            putLong((Long) value);
+        } else if (value instanceof Integer) {
+            output.put(VALUE_INTEGER);
+            putInt((Integer) value);
+        } else if (value instanceof byte[]) {
+            output.put(VALUE_BYTES);
+            putBytes((byte[]) value);
+        } else {
+            if (!serializedValues)
+                throw new NotSerializableException(value.getClass().getName());
+            output.put(VALUE_SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+                objectOutput.writeObject(value);
+            }
+            putBytes(bytes.toByteArray());
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer frame) throws IOException {
+        int length = frame.getInt();
+        if (length < 0 || length > frame.remaining())
+            throw new IOException("Malformed frame");
+        byte[] bytes = new byte[length];
+        frame.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the number of elements of a list, checked against the bytes left in the frame
+     * (every element takes at least one byte)
+     */
+    private static int getSize(ByteBuffer frame) throws IOException {
+        int size = frame.getInt();
+        if (size < 0 || size > frame.remaining())
+            throw new IOException("Malformed frame");
+        return size;
+    }
+
+    private static HashAlgorithm getHashAlgorithm(ByteBuffer frame) throws IOException {
+        int ordinal = frame.get();
+        HashAlgorithm[] algorithms = HashAlgorithm.values();
+        if (ordinal < 0 || ordinal >= algorithms.length)
+            throw new IOException("Unknown hash algorithm " + ordinal);
+        return algorithms[ordinal];
+    }
+
+    private static Priority getPriority(ByteBuffer frame) throws IOException {
+        int ordinal = frame.get();
+        Priority[] priorities = Priority.values();
+        if (ordinal < 0 || ordinal >= priorities.length)
+            throw new IOException("Unknown priority " + ordinal);
+        return priorities[ordinal];
+    }
+
+    private static NodeInterface getNode(ByteBuffer frame) throws IOException {
+        if (frame.get() == 0)
+            return null;
+        long nodeId = frame.getLong();
+        String ipAddress = getIpAddress(frame);
+        return new NodeRef(nodeId, ipAddress, frame.getInt());
+    }
+
+    private static Long getPredecessorId(ByteBuffer frame, byte ownership) {
+        return (ownership & PREDECESSOR_KNOWN) != 0 ? frame.getLong() : null;
+    }
+
+    private static String getIpAddress(ByteBuffer frame) throws IOException {
+        if (frame.get() == IP_V4)
+            return (frame.get() & 0xFF) + "." + (frame.get() & 0xFF) + "." + (frame.get() & 0xFF) + "." + (frame.get() & 0xFF);
+        return new String(getBytes(frame), StandardCharsets.UTF_8);
+    }
+
+    private static Object getValue(ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return new String(getBytes(frame), StandardCharsets.UTF_8);
+            case VALUE_LONG:
+                return frame.getLong();
+            case VALUE_INTEGER:
+                return frame.getInt();
+            case VALUE_BYTES:
+                return getBytes(frame);
+            case VALUE_SERIALIZED:
+                if (!serializedValues)
+                    throw new IOException("Serialized values are not accepted");
+                try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(getBytes(frame)))) {
+                    return objectInput.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown class of stored value");
+                }
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * @param ipAddress ipAddress of node
+     * @return the 4 bytes of the address if it is in IPv4 dotted notation, otherwise null
+     */
+    private static byte[] parseIpv4(String ipAddress) {
+        String[] ipAddressInArray = ipAddress.split("\\.");
+        if (ipAddressInArray.length != 4)
+            return null;
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String block = ipAddressInArray[i];
+            if (block.isEmpty() || block.length() > 3)
+                return null;
+            int value = 0;
+            for (int j = 0; j < block.length(); j++) {
+                char c = block.charAt(j);
+                if (c < '0' || c > '9')
+                    return null;
+                value = value * 10 + (c - '0');
+            }
+            if (value > 255)
+                return null;
+            bytes[i] = (byte) value;
+        }
+        return bytes;
+    }
+}
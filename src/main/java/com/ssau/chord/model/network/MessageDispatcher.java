@@ -0,0 +1,282 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.network.message.BusyResponse;
+import com.ssau.chord.model.network.message.CloseRequest;
+import com.ssau.chord.model.network.message.HelloMessage;
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.MessageHandler;
+import com.ssau.chord.model.network.message.NotifyRequest;
+import com.ssau.chord.model.network.message.PingRequest;
+import com.ssau.chord.model.network.message.Priority;
+import com.ssau.chord.model.network.message.RouteLookupRequest;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-wide dispatcher of the received messages, shared by all the connections of the transports.
+ * <p>
+ * The requests are handled by fixed pools with bounded queues: when the queue is full the request is
+ * discarded and a BusyResponse is sent back, so the other node fails it immediately instead of waiting
+ * for the timer. The maintenance requests (Priority.MAINTENANCE) have their own pool, so a burst of client
+ * requests never delays the stabilization of the ring. The responses are handled by a second pool, so that they are never queued behind
+ * requests whose handler is waiting for them; when also that pool is saturated the response is discarded and
+ * the waiting request fails by its timer. The handlers never run on the receiving thread, which for the
+ * NioTransport is the selector of all the connections. HelloMessage, NotifyRequest and CloseRequest are
+ * handled in order on the lane of their connection (on the maintenance pool), so the hello is handled before
+ * the notifications that follow it, and they get a BusyResponse when the lane can not be scheduled;
+ * the virtual node that uses the connection is chosen from the hello on the receiving thread, before any
+ * other message of the connection is dispatched.
+ * PingRequest is handled with the responses: it is never discarded, so a saturated node is not suspected
+ * by the FailureDetector of the other nodes. A RouteLookupRequest discarded by a saturated node gets no
+ * BusyResponse, because it is not waited on its connection.
+ * <p>
+ * The sizes are read from the system properties chord.dispatch.threads, chord.dispatch.queue,
+ * chord.dispatch.maintenanceThreads, chord.dispatch.maintenanceQueue, chord.dispatch.responseThreads
+ * and chord.dispatch.responseQueue.
+ * <p>
+ * In the virtual mode of NodeThreads every message is handled by a new virtual thread, so the handlers can
+ * block on their RPCs without occupying a pool: at most chord.dispatch.virtualLimit requests of each priority
+ * are handled at the same time, the others are discarded with a BusyResponse as when the queue is full
+ */
+public final class MessageDispatcher {
+    private static final int REQUEST_THREADS = Integer.getInteger("chord.dispatch.threads", 16);
+    private static final int REQUEST_QUEUE = Integer.getInteger("chord.dispatch.queue", 1024);
+    private static final int MAINTENANCE_THREADS = Integer.getInteger("chord.dispatch.maintenanceThreads", 4);
+    private static final int MAINTENANCE_QUEUE = Integer.getInteger("chord.dispatch.maintenanceQueue", 256);
+    private static final int RESPONSE_THREADS = Integer.getInteger("chord.dispatch.responseThreads", 4);
+    private static final int RESPONSE_QUEUE = Integer.getInteger("chord.dispatch.responseQueue", 4096);
+    private static final int VIRTUAL_LIMIT = Integer.getInteger("chord.dispatch.virtualLimit", 100000);
+    private static final long KEEP_ALIVE = 60;
+
+    private static final MessageDispatcher dispatcher = new MessageDispatcher();
+
+    private final Executor requestExecutor;
+    private final Executor maintenanceExecutor;
+    private final Executor responseExecutor;
+
+    private MessageDispatcher() {
+        ExecutorService virtualExecutor = NodeThreads.newVirtualPerTaskExecutor();
+        if (virtualExecutor != null) {
+            requestExecutor = new BoundedExecutor(virtualExecutor, VIRTUAL_LIMIT);
+            maintenanceExecutor = new BoundedExecutor(virtualExecutor, VIRTUAL_LIMIT);
+            responseExecutor = virtualExecutor;
+            return;
+        }
+        ThreadPoolExecutor requestPool = new ThreadPoolExecutor(REQUEST_THREADS, REQUEST_THREADS, KEEP_ALIVE,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(REQUEST_QUEUE), NodeThreads.platformFactory("chord-request-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        requestPool.allowCoreThreadTimeOut(true);
+        requestExecutor = requestPool;
+        ThreadPoolExecutor maintenancePool = new ThreadPoolExecutor(MAINTENANCE_THREADS, MAINTENANCE_THREADS, KEEP_ALIVE,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAINTENANCE_QUEUE), NodeThreads.platformFactory("chord-maintenance-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        maintenancePool.allowCoreThreadTimeOut(true);
+        maintenanceExecutor = maintenancePool;
+        ThreadPoolExecutor responsePool = new ThreadPoolExecutor(RESPONSE_THREADS, RESPONSE_THREADS, KEEP_ALIVE,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(RESPONSE_QUEUE), NodeThreads.platformFactory("chord-response-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        responsePool.allowCoreThreadTimeOut(true);
+        responseExecutor = responsePool;
+    }
+
+    /**
+     * @return the dispatcher singleton
+     */
+    public static MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Handles the received message out of the receiving thread
+     *
+     * @param message        the received message
+     * @param messageHandler handler of the connection (the NodeCommunicator)
+     * @param connection     connection from which the message has been received, used to send the BusyResponse
+     * @param orderedLane    lane of the connection, created by newOrderedLane
+     */
+    void dispatch(Message message, MessageHandler messageHandler, Connection connection, Executor orderedLane) {
+        MessageTask task = new MessageTask(message, messageHandler, connection);
+        if (message instanceof HelloMessage && messageHandler instanceof NodeCommunicator)
+            ((NodeCommunicator) messageHandler).bindNode(((HelloMessage) message).getTargetNodeId());
+        try {
+            if (message instanceof HelloMessage || message instanceof NotifyRequest || message instanceof CloseRequest)
+                orderedLane.execute(task);
+            else if (!message.isRequest() || message instanceof PingRequest)
+                responseExecutor.execute(task);
+            else if (message.getPriority() == Priority.MAINTENANCE)
+                maintenanceExecutor.execute(task);
+            else
+                requestExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.reject();
+        }
+    }
+
+    /**
+     * Executes a task that is not a received node message (a message of the controller)
+     * on the pool of the client requests
+     *
+     * @param task task to execute
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public void execute(Runnable task) {
+        requestExecutor.execute(task);
+    }
+
+    /**
+     * Notifies the disconnection of the other node to the handler of the connection, on the response pool
+     * (the waiting requests fail like the responses complete them)
+     *
+     * @param messageHandler handler of the connection
+     */
+    void disconnected(MessageHandler messageHandler) {
+        try {
+            responseExecutor.execute(messageHandler::nodeDisconnected);
+        } catch (RejectedExecutionException e) {
+            //rare, and the waiting requests must not wait the timer: a thread of its own, never the receiving one
+            NodeThreads.platformFactory("chord-disconnected-").newThread(messageHandler::nodeDisconnected).start();
+        }
+    }
+
+    /**
+     * @return a new executor that runs its tasks one at a time, in submission order, on the maintenance pool.
+     * A task that throws does not stop the lane; if the pool is saturated when the lane has to be scheduled,
+     * execute throws RejectedExecutionException and the task is discarded
+     */
+    Executor newOrderedLane() {
+        return new OrderedLane();
+    }
+
+    private final class OrderedLane implements Executor, Runnable {
+        /**
+         * tasks not yet executed, guarded by itself
+         */
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean draining;
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (tasks) {
+                tasks.add(task);
+                if (draining)
+                    return;
+                draining = true;
+            }
+            try {
+                maintenanceExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                //the other tasks queued meanwhile are discarded too, as if they had been rejected
+                List<Runnable> discarded;
+                synchronized (tasks) {
+                    discarded = new ArrayList<>(tasks);
+                    tasks.clear();
+                    draining = false;
+                }
+                for (Runnable discardedTask : discarded)
+                    if (discardedTask != task && discardedTask instanceof MessageTask)
+                        ((MessageTask) discardedTask).reject();
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                synchronized (tasks) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Handling of a received message
+     */
+    private static final class MessageTask implements Runnable {
+        private final Message message;
+        private final MessageHandler messageHandler;
+        private final Connection connection;
+
+        MessageTask(Message message, MessageHandler messageHandler, Connection connection) {
+            this.message = message;
+            this.messageHandler = messageHandler;
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            try {
+                message.handle(messageHandler);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Discards the message because no pool can accept it: a request gets a BusyResponse, a response is
+         * dropped and the request that waits it fails by its timer
+         */
+        void reject() {
+            if (!message.isRequest() || message instanceof RouteLookupRequest)
+                return; //a RouteLookupRequest has no response on this connection: the node that started the lookup fails it by timeout
+            try {
+                connection.sendMessage(new BusyResponse(message.getLockId()));
+            } catch (IOException ignored) {
+                //the connection is closing, the other node will notice it
+            }
+        }
+    }
+
+    /**
+     * Executor that runs at most limit tasks at the same time, and rejects the others
+     */
+    private static final class BoundedExecutor implements Executor {
+        private final Executor executor;
+        private final Semaphore permits;
+
+        BoundedExecutor(Executor executor, int limit) {
+            this.executor = executor;
+            this.permits = new Semaphore(limit);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!permits.tryAcquire())
+                throw new RejectedExecutionException();
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+}
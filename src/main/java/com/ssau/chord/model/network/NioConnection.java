@@ -0,0 +1,277 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.MessageHandler;
+import com.ssau.chord.model.network.message.Priority;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Connection of the NioTransport. The frames are written directly by the sending thread, from the output buffer
+ * of the codec, while the channel accepts them; what remains is copied in a buffer of the size of the frame,
+ * queued and written by the selector thread when the channel is writable.
+ * The maintenance frames are queued apart and written before the client ones (a frame already partially written
+ * is completed first, so the frames are never mixed).
+ * The received bytes are accumulated until a whole frame is available
+ */
+class NioConnection implements Connection {
+    private final NioTransport transport;
+    private final SocketChannel channel;
+    private final boolean connectionIn;
+    private final MessageCodec codec = new MessageCodec();
+    private final Executor orderedLane = MessageDispatcher.getDispatcher().newOrderedLane();
+    /**
+     * frames not yet written, guarded by writeLock
+     */
+    private final ArrayDeque<ByteBuffer> maintenanceQueue = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> clientQueue = new ArrayDeque<>();
+    /**
+     * rest of the frame partially written, to be completed before the others, guarded by writeLock
+     */
+    private ByteBuffer startedFrame;
+    private final Object writeLock = new Object();
+    /**
+     * bytes received and not yet decoded, used only by the selector thread
+     */
+    private ByteBuffer inbound = ByteBuffer.allocate(1024);
+    private volatile SelectionKey selectionKey;
+    private volatile MessageHandler messageHandler;
+    private volatile boolean connected = true;
+    /**
+     * true when the connection has been closed with frames still queued: the channel is closed by the selector
+     * thread after they are written, guarded by writeLock
+     */
+    private boolean closing;
+    private volatile boolean started;
+
+    /**
+     * @param transport    transport that owns the selector
+     * @param channel      non-blocking channel of the connection
+     * @param connectionIn true if the connection has been accepted
+     */
+    NioConnection(NioTransport transport, SocketChannel channel, boolean connectionIn) {
+        this.transport = transport;
+        this.channel = channel;
+        this.connectionIn = connectionIn;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    /**
+     * @return interest set of the channel: always read, and write when there are queued frames
+     */
+    int getInterestOps() {
+        synchronized (writeLock) {
+            return hasQueued() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Registers the channel to the selector of the transport
+     */
+    @Override
+    public void start(MessageHandler messageHandler) {
+        this.messageHandler = messageHandler;
+        started = true;
+        transport.executeOnSelector(() -> transport.register(this));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The frame is written immediately if nothing is queued before it, only the bytes not written are copied
+     */
+    @Override
+    public void sendMessage(Message message) throws IOException {
+        synchronized (writeLock) {
+            if (!connected)
+                throw new IOException("Connection closed");
+            ByteBuffer frame = codec.encode(message);
+            if (!hasQueued()) {
+                channel.write(frame);
+                if (!frame.hasRemaining())
+                    return;
+                startedFrame = copy(frame);
+                transport.executeOnSelector(this::updateInterestOps);
+                return;
+            }
+            (message.getPriority() == Priority.MAINTENANCE ? maintenanceQueue : clientQueue).add(copy(frame));
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer frame) {
+        ByteBuffer buffer = ByteBuffer.allocate(frame.remaining());
+        buffer.put(frame);
+        buffer.flip();
+        return buffer;
+    }
+
+    private boolean hasQueued() {
+        return startedFrame != null || !maintenanceQueue.isEmpty() || !clientQueue.isEmpty();
+    }
+
+    /**
+     * @return the queued frames in the order in which they are written: the frame already partially
+     * written, the maintenance frames, the client frames
+     */
+    private ByteBuffer[] queuedFrames() {
+        ByteBuffer[] frames = new ByteBuffer[(startedFrame != null ? 1 : 0) + maintenanceQueue.size() + clientQueue.size()];
+        int i = 0;
+        if (startedFrame != null)
+            frames[i++] = startedFrame;
+        for (ByteBuffer frame : maintenanceQueue)
+            frames[i++] = frame;
+        for (ByteBuffer frame : clientQueue)
+            frames[i++] = frame;
+        return frames;
+    }
+
+    /**
+     * Removes the frames written by a gathering write; the first frame not completely written,
+     * if it has been started, becomes the startedFrame
+     */
+    private void removeWritten() {
+        if (startedFrame != null) {
+            if (startedFrame.hasRemaining())
+                return;
+            startedFrame = null;
+        }
+        for (ArrayDeque<ByteBuffer> queue : Arrays.asList(maintenanceQueue, clientQueue)) {
+            while (!queue.isEmpty() && !queue.peek().hasRemaining())
+                queue.poll();
+            if (!queue.isEmpty()) {
+                if (queue.peek().position() > 0)
+                    startedFrame = queue.poll();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called by the selector thread when the channel is writable: writes the queued frames with a single
+     * gathering write, maintenance first, as long as the channel accepts them.
+     * If the connection is closing and all the frames are written, closes the channel
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void flush() throws IOException {
+        synchronized (writeLock) {
+            while (hasQueued()) {
+                long written = channel.write(queuedFrames());
+                removeWritten();
+                if (written == 0)
+                    break;
+            }
+            if (closing && !hasQueued()) {
+                closeChannel();
+                return;
+            }
+        }
+        updateInterestOps();
+    }
+
+    private void updateInterestOps() {
+        SelectionKey key = selectionKey;
+        if (key != null && key.isValid())
+            key.interestOps(getInterestOps());
+    }
+
+    /**
+     * Called by the selector thread when the channel is readable: decodes all the complete frames and passes
+     * them to the MessageDispatcher
+     *
+     * @param readBuffer buffer of the selector thread
+     * @throws IOException if the other node has disconnected or has sent a malformed frame
+     */
+    void read(ByteBuffer readBuffer) throws IOException {
+        readBuffer.clear();
+        if (channel.read(readBuffer) < 0)
+            throw new IOException("Connection closed by the other node");
+        readBuffer.flip();
+        if (inbound.remaining() < readBuffer.remaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(inbound.capacity() * 2, inbound.position() + readBuffer.remaining()));
+            inbound.flip();
+            bigger.put(inbound);
+            inbound = bigger;
+        }
+        inbound.put(readBuffer);
+        inbound.flip();
+        while (inbound.remaining() >= Integer.BYTES) {
+            int length = inbound.getInt(inbound.position());
+            if (length <= 0 || length > MessageCodec.MAX_FRAME_LENGTH)
+                throw new IOException("Invalid frame length " + length);
+            if (inbound.remaining() < Integer.BYTES + length)
+                break;
+            inbound.position(inbound.position() + Integer.BYTES);
+            ByteBuffer frame = inbound.slice();
+            frame.limit(length);
+            Message message = MessageCodec.decode(frame);
+            inbound.position(inbound.position() + length);
+            MessageDispatcher.getDispatcher().dispatch(message, messageHandler, this, orderedLane);
+        }
+        inbound.compact();
+    }
+
+    /**
+     * Called when the channel fails: closes the channel without writing the queued frames and,
+     * for outgoing connections, calls the nodeDisconnected method of NodeCommunicator
+     */
+    void disconnected() {
+        boolean wasConnected = connected;
+        synchronized (writeLock) {
+            connected = false;
+            closing = false;
+            discardQueued();
+        }
+        closeChannel();
+        if (wasConnected && !connectionIn && messageHandler != null)
+            MessageDispatcher.getDispatcher().disconnected(messageHandler);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The frames still queued (as a CloseRequest just sent) are written by the selector thread before
+     * closing the channel, as SocketNode writes its queued messages before closing the socket.
+     * If the other node disconnects first, they are discarded
+     */
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            connected = false;
+            if (hasQueued() && started && channel.isOpen()) {
+                closing = true;
+                transport.executeOnSelector(this::updateInterestOps);
+                return;
+            }
+            discardQueued();
+        }
+        closeChannel();
+    }
+
+    private void discardQueued() {
+        startedFrame = null;
+        maintenanceQueue.clear();
+        clientQueue.clear();
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.exceptions.ConnectionErrorException;
+import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+import com.ssau.chord.model.node.Node;
+import com.ssau.chord.model.node.NodeInterface;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Transport with non-blocking channels: a single selector thread accepts the incoming connections,
+ * reads the frames of all the connections and completes the pending writes.
+ * The received messages are handled by the MessageDispatcher, never on the selector thread
+ */
+public class NioTransport implements Transport, Runnable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    /**
+     * operations on the selection keys requested by the other threads, executed by the selector thread
+     */
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    /**
+     * used only by the selector thread
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    /**
+     * listening channels of the nodes of the JVM
+     */
+    private final Map<Node, ServerSocketChannel> serverChannels = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the selector and starts the selector thread
+     */
+    public NioTransport() {
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new UnexpectedBehaviourException();
+        }
+        //the selector never blocks on a single connection, so it always runs on a platform thread
+        NodeThreads.platformFactory("chord-nio-selector-").newThread(this).start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The connect is blocking, after the channel is switched to non-blocking mode
+     * (it is registered to the selector when the connection is started)
+     */
+    @Override
+    public Connection connect(NodeInterface node, String ipAddress, int socketPort) throws ConnectionErrorException {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(new InetSocketAddress(ipAddress, socketPort));
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            throw new ConnectionErrorException();
+        }
+        return new NioConnection(this, channel, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void listen(Node node, int socketPort) {
+        try {
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(socketPort));
+            channel.configureBlocking(false);
+            serverChannels.put(node, channel);
+            executeOnSelector(() -> {
+                try {
+                    channel.register(selector, SelectionKey.OP_ACCEPT, node);
+                } catch (ClosedChannelException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Closes the listening channel of the node; the selector thread keeps serving the other nodes
+     */
+    @Override
+    public void stopListening(Node node) {
+        ServerSocketChannel channel = serverChannels.remove(node);
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Selector loop: executes the requested key operations, then serves the ready channels.
+     * A RuntimeException of a task or of a channel is printed and closes only that connection,
+     * the thread keeps serving all the others
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            Runnable task;
+            while ((task = selectorTasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (key.isValid() && key.isAcceptable())
+                        accept((ServerSocketChannel) key.channel(), (Node) key.attachment());
+                    else if (key.attachment() instanceof NioConnection)
+                        serve(key, (NioConnection) key.attachment());
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    if (key.attachment() instanceof NioConnection)
+                        ((NioConnection) key.attachment()).disconnected();
+                }
+            }
+        }
+    }
+
+    private void serve(SelectionKey key, NioConnection connection) {
+        try {
+            if (key.isValid() && key.isReadable())
+                connection.read(readBuffer);
+            if (key.isValid() && key.isWritable())
+                connection.flush();
+        } catch (IOException | CancelledKeyException e) {
+            connection.disconnected();
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel, Node node) {
+        SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null)
+                return;
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        NioConnection connection = new NioConnection(this, channel, true);
+        try {
+            String ipAddress = channel.socket().getInetAddress().getHostAddress();
+            node.getSocketManager().createConnection(connection, ipAddress);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            connection.disconnected(); //closes only the accepted channel
+        }
+    }
+
+    /**
+     * Registers the started connection to the selector (called on the selector thread)
+     *
+     * @param connection started connection
+     */
+    void register(NioConnection connection) {
+        try {
+            connection.setSelectionKey(connection.getChannel().register(selector, connection.getInterestOps(), connection));
+        } catch (ClosedChannelException e) {
+            connection.disconnected();
+        }
+    }
+
+    /**
+     * Executes the task on the selector thread, the only one that can modify the selection keys
+     *
+     * @param task operation on the selection keys
+     */
+    void executeOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+}
@@ -6,100 +6,162 @@ import com.ssau.chord.model.exceptions.ConnectionErrorException;
 import com.ssau.chord.model.exceptions.TimerExpiredException;
 import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
 import com.ssau.chord.model.network.message.*;
-import com.ssau.chord.model.node.Node;
+import com.ssau.chord.model.node.Hash;
+import com.ssau.chord.model.node.HashAlgorithm;
+import com.ssau.chord.model.node.KeyReply;
+import com.ssau.chord.model.node.NextHop;
+import com.ssau.chord.model.node.NodeRef;
 import com.ssau.chord.model.node.NodeInterface;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.net.Socket;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 import static java.lang.System.out;
 
 public class NodeCommunicator implements NodeInterface, Serializable, MessageHandler {
-    /**
-     * in milliseconds
-     */
-    private static final int TIMEOUT = 3000;
-    private transient Socket joinNodeSocket;
     private transient NodeInterface node; //mio nodo
     private transient Long nodeId; //questo è il nodeId dell'altro
     private transient String ipAddress; //ipAddress dell'altro nodo
     private transient int socketPort; //socketPort dell'altro nodo
     private transient int dimFingerTable;
-    private transient SocketNode socketNode;
-    private transient volatile HashMap<Long, Object> lockList = new HashMap<>();
-    private transient volatile Long lockID = 0L;
+    private transient Connection connection;
+    /**
+     * requests sent to the other node and still waiting for the response with the same lockId
+     */
+    private transient PendingRequestTable pendingRequests = new PendingRequestTable();
+    /**
+     * round trip time of the other node, from which the timeout of the requests is computed
+     */
+    private transient RttEstimator rttEstimator = new RttEstimator();
+    /**
+     * true when this node is closing the connection, so its end is not a disconnection of the other node
+     */
+    private transient volatile boolean closing;
     /**
-     * is map <lockId, Message> in this way the calling method can access
-     * to the return value using the correspondent lockId
+     * response to the HelloMessage sent when the connection is opened (null for the accepted connections)
      */
-    private transient volatile HashMap<Long, Message> messageList;
+    private transient CompletableFuture<Message> hello;
 
+    /**
+     * Opens the connection and sends the HelloMessage, without waiting the response: the requests sent after
+     * it follow it on the same connection
+     */
     public NodeCommunicator(String joinIpAddress, int joinSocketPort, NodeInterface node, long nodeId)
             throws ConnectionErrorException {
         this.node = node;
         this.nodeId = nodeId;
         this.ipAddress = joinIpAddress;
         this.socketPort = joinSocketPort;
-        this.messageList = new HashMap<>();
         this.dimFingerTable = node.getDimFingerTable();
-        try {
-            joinNodeSocket = new Socket(joinIpAddress, joinSocketPort);
-        } catch (IOException e) {
-            throw new ConnectionErrorException();
-        }
-        ObjectOutputStream out;
-        ObjectInputStream in;
-        try {
-            out = new ObjectOutputStream(joinNodeSocket.getOutputStream());
-            in = new ObjectInputStream(joinNodeSocket.getInputStream());
-        } catch (IOException e) {
-            throw new UnexpectedBehaviourException();
-        }
-        this.socketNode = new SocketNode(in, out, this);
-        Executors.newCachedThreadPool().submit(socketNode);
+        this.connection = SocketManager.getTransport().connect(node, joinIpAddress, joinSocketPort);
+        connection.start(this);
+        hello = sendRequestAsync(lockId -> new HelloMessage(lockId, HelloMessage.PROTOCOL_VERSION,
+                node.getNodeId(), node.getSocketPort(), node.getDimFingerTable(), nodeId));
     }
 
-    //used by SocketNode, when StartSocketListener accepts a new connection
-    NodeCommunicator(SocketNode socketNode, NodeInterface node, String ipAddress) {
-        this.socketNode = socketNode;
+    //used by SocketManager, when the Transport accepts a new connection
+    NodeCommunicator(Connection connection, NodeInterface node, String ipAddress) {
+        this.connection = connection;
         this.node = node;
-        this.messageList = new HashMap<>();
         this.ipAddress = ipAddress;
         this.dimFingerTable = node.getDimFingerTable();
     }
 
     /**
-     * Creates the lock object
+     * Called by the MessageDispatcher on the receiving thread when the HelloMessage arrives, so before the requests
+     * that follow it are handled: the accepted connection is used by the virtual node to which it has been opened
+     *
+     * @param targetNodeId nodeId of the node chosen by the other node, -1 if it is not known
+     */
+    void bindNode(Long targetNodeId) {
+        NodeInterface target = node.getSocketManager().getLocalNode(targetNodeId);
+        if (target != null)
+            node = target;
+    }
+
+    /**
+     * Sends the request created with a new lockId to the other node, without waiting the response.
+     * The timeout is computed by the RttEstimator, that is updated with the round trip time of the response
+     *
+     * @param request creates the request message given its lockId
+     * @return future completed with the response that has the same lockId, or exceptionally with a
+     * TimerExpiredException if it does not arrive within the timeout
+     */
+    private CompletableFuture<Message> sendRequestAsync(Function<Long, Message> request) {
+        long timeout = rttEstimator.getTimeout();
+        long start = System.nanoTime();
+        CompletableFuture<Message> response = sendRequestAsync(request, timeout);
+        response.whenComplete((message, throwable) -> {
+            double rtt = (System.nanoTime() - start) / 1e6;
+            if (throwable == null)
+                rttEstimator.sample(rtt);
+            else if (rtt >= timeout)
+                rttEstimator.backOff();
+        });
+        return response;
+    }
+
+    /**
+     * Sends the request created with a new lockId to the other node, without waiting the response
+     *
+     * @param request creates the request message given its lockId
+     * @param timeout in milliseconds
+     * @return future completed with the response that has the same lockId, or exceptionally with a
+     * TimerExpiredException if it does not arrive within timeout
+     */
+    private CompletableFuture<Message> sendRequestAsync(Function<Long, Message> request, long timeout) {
+        Long lockId = pendingRequests.nextLockId();
+        CompletableFuture<Message> response = pendingRequests.register(lockId, timeout);
+        try {
+            connection.sendMessage(request.apply(lockId));
+        } catch (IOException e) {
+            e.printStackTrace();
+            pendingRequests.fail(lockId);
+        }
+        return response;
+    }
+
+    /**
+     * Sends the request created with a new lockId to the other node, and waits (at most the timeout)
+     * the response with the same lockId
      *
-     * @return lockId corresponding to the created lock object
+     * @param request     creates the request message given its lockId
+     * @param requestName name of the request, printed when the timer expires
+     * @return the received response
+     * @throws TimerExpiredException if the response does not arrive within the timeout
      */
-    private synchronized Long createLock() {
-        lockList.put(lockID, new Object());
-        lockID = lockID + 1;
-        return lockID - 1;
+    private Message sendRequest(Function<Long, Message> request, String requestName) throws TimerExpiredException {
+        return await(sendRequestAsync(request), requestName);
+    }
+
+    private Message await(CompletableFuture<Message> response, String requestName) throws TimerExpiredException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            out.println("Timer expired " + requestName);
+            throw new TimerExpiredException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimerExpiredException();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        Long lockId = createLock();
-        synchronized (lockList.get(lockId)) {
-            socketNode.sendMessage(new CloseRequest(lockId));
-            try {
-                lockList.get(lockId).wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        closing = true;
+        //the other node closes the socket right after the response, so the request can also fail as disconnected
+        try {
+            sendRequestAsync(CloseRequest::new).get();
+        } catch (ExecutionException ignore) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        socketNode.close();
-        joinNodeSocket.close();
-        node.getSocketManager().closeCommunicator(nodeId);
+        connection.close();
     }
 
     /**
@@ -111,120 +173,45 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
      */
     @Override
     public void notify(NodeInterface node) throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new NotifyRequest(node, lockId));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired NOTIFY");
-            throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
+        sendRequest(lockId -> new NotifyRequest(NodeRef.of(node), lockId), "NOTIFY");
     }
 
     /**
      * {@inheritDoc}
-     * Отправляет запрос Get Initial Socket Port на другой узел, ожидает объекты,
-     * соответствующие индексу сообщения, и, наконец, извлекает возвращаемое значение
-     * из ответа Get Initial Socket Port, соответствующего индексу сообщения
+     * Ожидает ответ на HelloMessage, отправленный при открытии соединения,
+     * и извлекает из него размер finger table другого узла
      *
      * @return {@inheritDoc}
      * @throws TimerExpiredException {@inheritDoc}
      */
     @Override
-    public int getInitialSocketPort() throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new GetInitialSocketPortRequest(lockId));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired GETSOCKET PORT");
+    public int getInitialDimFingerTable() throws TimerExpiredException {
+        HelloResponse helloResponse = (HelloResponse) await(hello, "HELLO");
+        if (helloResponse.getVersion() != HelloMessage.PROTOCOL_VERSION)
             throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
-        GetInitialSocketPortResponse getInitialSocketPortResponse = (GetInitialSocketPortResponse) messageList.get(lockId);
-        messageList.remove(lockId);
-        return getInitialSocketPortResponse.getSocketPort();
+        return helloResponse.getDimFingerTable();
     }
 
     /**
      * {@inheritDoc}
-     * Отправляет запрос Get Dim Finger Table на другой узел, ожидает объекты,
-     * соответствующие индексу сообщения, и, наконец, извлекает возвращаемое значение
-     * из ответа Get Dim Finger Table, соответствующего индексу сообщения
+     * Waits the response to the HelloMessage, like getInitialDimFingerTable
      *
      * @return {@inheritDoc}
      * @throws TimerExpiredException {@inheritDoc}
      */
     @Override
-    public int getInitialDimFingerTable() throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new GetDimFingerTableRequest(lockId));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired GET DIM FINGER TABLE");
+    public HashAlgorithm getInitialHashAlgorithm() throws TimerExpiredException {
+        HelloResponse helloResponse = (HelloResponse) await(hello, "HELLO");
+        if (helloResponse.getVersion() != HelloMessage.PROTOCOL_VERSION)
             throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
-        GetDimFingerTableResponse getDimFingerTableResponse = (GetDimFingerTableResponse) messageList.get(lockId);
-        messageList.remove(lockId);
-        return getDimFingerTableResponse.getDimFingerTable();
+        return helloResponse.getHashAlgorithm();
     }
 
     /**
      * {@inheritDoc}
-     * Отправляет запрос FindSuccessor на другой узел, ожидает объекты,
-     * соответствующие индексу сообщения, и, наконец, извлекает возвращаемое
-     * значение из ответа FindSuccessor, соответствующего индексу сообщения
+     * Отправляет запрос FindSuccessor на другой узел, ожидает ответ
+     * с тем же индексом сообщения, и, наконец, извлекает возвращаемое
+     * значение из ответа FindSuccessor
      *
      * @param id NodeId to be found
      * @return
@@ -232,107 +219,130 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
      */
     @Override
     public NodeInterface findSuccessor(Long id) throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new FindSuccessorRequest(id, lockId));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired FIND SUCCESSOR");
-            throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
-        FindSuccessorResponse findSuccessorResponse = (FindSuccessorResponse) messageList.get(lockId);
-        messageList.remove(lockId);
+        FindSuccessorResponse findSuccessorResponse =
+                (FindSuccessorResponse) await(sendFindSuccessorRequest(id, Priority.MAINTENANCE), "FIND SUCCESSOR");
         return findSuccessorResponse.getNode();
     }
 
+    /**
+     * {@inheritDoc}
+     * Sends a FindSuccessorRequest to the other node, the future is completed by the FindSuccessorResponse
+     *
+     * @param id       NodeId to be found
+     * @param priority {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<NodeInterface> findSuccessorAsync(Long id, Priority priority) {
+        return sendFindSuccessorRequest(id, priority)
+                .thenApply(response -> ((FindSuccessorResponse) response).getNode());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Sends a NextHopRequest to the other node: it is answered without other hops, so its round trip time
+     * is measured and its timeout is computed by the RttEstimator
+     *
+     * @param id       NodeId to be found
+     * @param priority {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<NextHop> nextHopAsync(Long id, Priority priority) {
+        return sendRequestAsync(lockId -> new NextHopRequest(id, priority, lockId))
+                .thenApply(response -> ((NextHopResponse) response).getNextHop());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Sends a RouteLookupRequest to the other node, without registering any response
+     *
+     * @param id       NodeId to be found
+     * @param origin   the node that started the lookup, to which the successor is sent
+     * @param lookupId id of the lookup in the table of origin
+     * @param hops     number of nodes that have forwarded the lookup
+     * @param priority {@inheritDoc}
+     * @throws IOException {@inheritDoc}
+     */
+    @Override
+    public void routeLookup(Long id, NodeInterface origin, Long lookupId, int hops, Priority priority) throws IOException {
+        connection.sendMessage(new RouteLookupRequest(id, NodeRef.of(origin), hops, priority, lookupId));
+    }
+
+    /**
+     * Sends to the other node the result of a lookup that it has started
+     *
+     * @param lookupResult the successor and the id of the lookup in the table of the other node
+     * @throws IOException if an I/O error occurs
+     */
+    void sendLookupResult(LookupResult lookupResult) throws IOException {
+        connection.sendMessage(lookupResult);
+    }
+
     @Override
     public NodeInterface getPredecessor() throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new GetPredecessorRequest(lockId));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired GET PREDECESSOR");
-            throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
-        GetPredecessorResponse getPredecessorResponse = (GetPredecessorResponse) messageList.get(lockId);
-        messageList.remove(lockId);
+        GetPredecessorResponse getPredecessorResponse =
+                (GetPredecessorResponse) sendRequest(GetPredecessorRequest::new, "GET PREDECESSOR");
         return getPredecessorResponse.getNode();
     }
 
     @Override
     public List<NodeInterface> getSuccessorList() throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new GetSuccessorListRequest(lockId));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired GET SUCCESSOR LIST");
-            throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
-        GetSuccessorListResponse getSuccessorListResponse = (GetSuccessorListResponse) messageList.get(lockId);
-        messageList.remove(lockId);
+        GetSuccessorListResponse getSuccessorListResponse =
+                (GetSuccessorListResponse) sendRequest(GetSuccessorListRequest::new, "GET SUCCESSOR LIST");
         return getSuccessorListResponse.getSuccessorList();
     }
 
+    @Override
+    public CompletableFuture<List<NodeInterface>> getSuccessorListAsync() {
+        return sendRequestAsync(GetSuccessorListRequest::new)
+                .thenApply(response -> ((GetSuccessorListResponse) response).getSuccessorList());
+    }
+
     /**
      * {@inheritDoc}
+     * All the requests still waiting for a response from the disconnected node fail immediately.
+     * The node is removed only if the connection has not been closed by this node
      */
     @Override
     public void nodeDisconnected() {
         //out.println("Entro qui, disconnesso: " + nodeId);
-        node.getSocketManager().removeNode(nodeId);
+        pendingRequests.failAll();
+        if (!closing)
+            node.getSocketManager().removeNode(nodeId, this);
+    }
+
+    /**
+     * The lookup can be forwarded through several nodes before the response, so its round trip time is not
+     * measured and its timeout is the maximum one
+     */
+    private CompletableFuture<Message> sendFindSuccessorRequest(Long id, Priority priority) {
+        return sendRequestAsync(lockId -> new FindSuccessorRequest(id, priority, lockId), RttEstimator.MAX_TIMEOUT);
+    }
+
+    /**
+     * @return the round trip time estimator of the other node
+     */
+    RttEstimator getRttEstimator() {
+        return rttEstimator;
+    }
+
+    /**
+     * Sends a heartbeat to the other node, used by the FailureDetector
+     *
+     * @return future completed when the PingResponse arrives
+     */
+    CompletableFuture<Message> ping() {
+        return sendRequestAsync(PingRequest::new);
+    }
+
+    /**
+     * Called by the FailureDetector when the other node is suspected: all the waiting requests fail
+     * and the connection is closed, without waiting for the other node
+     */
+    void suspected() {
+        pendingRequests.failAll();
+        connection.close();
     }
 
     /**
@@ -340,36 +350,44 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
      */
     @Override
     public NodeInterface addKey(Map.Entry<Long, Object> keyValue) throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new AddKeyRequest(keyValue, lockId));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired ADD KEY");
-            throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
-        AddKeyResponse addKeyResponse = (AddKeyResponse) messageList.get(lockId);
-        messageList.remove(lockId);
+        AddKeyResponse addKeyResponse =
+                (AddKeyResponse) sendRequest(lockId -> new AddKeyRequest(keyValue, lockId), "ADD KEY");
         return addKeyResponse.getNode();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<NodeInterface> addKeyAsync(Map.Entry<Long, Object> keyValue) {
+        return sendRequestAsync(lockId -> new AddKeyRequest(keyValue, lockId))
+                .thenApply(response -> ((AddKeyResponse) response).getNode());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Sends an AddKeyRequest, the other node stores the key without lookups
+     */
+    @Override
+    public CompletableFuture<KeyReply> storeKeyAsync(Map.Entry<Long, Object> keyValue, boolean ownerOnly) {
+        return sendRequestAsync(lockId -> new AddKeyRequest(keyValue, ownerOnly, lockId)).thenApply(response -> {
+            AddKeyResponse addKeyResponse = (AddKeyResponse) response;
+            return new KeyReply(null, addKeyResponse.getPredecessorId(), addKeyResponse.isOwner());
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * Sends a FindKeyRequest, the other node answers with the value in its store
+     */
+    @Override
+    public CompletableFuture<KeyReply> retrieveKeyAsync(Long key) {
+        return sendRequestAsync(lockId -> new FindKeyRequest(lockId, key)).thenApply(response -> {
+            FindKeyResponse findKeyResponse = (FindKeyResponse) response;
+            return new KeyReply(findKeyResponse.getValue(), findKeyResponse.getPredecessorId(), findKeyResponse.isOwner());
+        });
+    }
+
     /**
      * {@inheritDoc}
      * Not used in this class
@@ -393,36 +411,20 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
      */
     @Override
     public Object findKey(Long key) throws TimerExpiredException {
-        Long lockId = createLock();
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        try {
-            final Future<?> f = service.submit(() -> {
-                synchronized (lockList.get(lockId)) {
-                    try {
-                        socketNode.sendMessage(new FindKeyRequest(lockId, key));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        lockList.get(lockId).wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            });
-
-            f.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            out.println("Timer expired FIND KEY");
-            throw new TimerExpiredException();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }
-        FindKeyResponse findKeyResponse = (FindKeyResponse) messageList.get(lockId);
-        messageList.remove(lockId);
+        FindKeyResponse findKeyResponse =
+                (FindKeyResponse) sendRequest(lockId -> new FindKeyRequest(lockId, key), "FIND KEY");
         return findKeyResponse.getValue();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Object> findKeyAsync(Long key) {
+        return sendRequestAsync(lockId -> new FindKeyRequest(lockId, key))
+                .thenApply(response -> ((FindKeyResponse) response).getValue());
+    }
+
     @Override
     public int getDimFingerTable() {
         return dimFingerTable;
@@ -467,32 +469,31 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
 
     /**
      * {@inheritDoc}
-     * Вызывает метод findSuccessor узла с параметрами, взятыми
-     * из сообщения запроса findSuccessor. Отправляем ответ FindSuccessor,
-     * содержащий полученный объект, запрашивающему узлу
+     * Вызывает метод findSuccessorAsync узла с параметрами, взятыми
+     * из сообщения запроса findSuccessor. Когда поиск завершен, отправляем ответ FindSuccessor,
+     * содержащий полученный объект (или null), запрашивающему узлу, не блокируя поток обработчика.
+     * The lookup is forwarded with the priority of the request
      *
      * @param findSuccessorRequest the received findSuccessorRequest message
      * @throws IOException
      */
     @Override
     public void handle(FindSuccessorRequest findSuccessorRequest) throws IOException {
-        NodeInterface nodeInterface = null;
-        try {
-            nodeInterface = node.findSuccessor(findSuccessorRequest.getId());
-        } catch (TimerExpiredException ignore) {
-        }
-        if (nodeInterface == null)
-            socketNode.sendMessage(new FindSuccessorResponse(null, findSuccessorRequest.getLockId()));
-        else {
-            NodeInterface nodeTemp = new Node(nodeInterface.getIpAddress(), nodeInterface.getSocketPort(), node.getDimFingerTable());
-            socketNode.sendMessage(new FindSuccessorResponse(nodeTemp, findSuccessorRequest.getLockId()));
-        }
+        Priority priority = findSuccessorRequest.getPriority();
+        node.findSuccessorAsync(findSuccessorRequest.getId(), priority).whenComplete((nodeInterface, throwable) -> {
+            try {
+                connection.sendMessage(new FindSuccessorResponse(NodeRef.of(nodeInterface), priority,
+                        findSuccessorRequest.getLockId()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
     }
 
     /**
      * {@inheritDoc}
-     * Берем параметр lockId из findSuccessorResponse разблокирует ожидающий метод
-     * для объекта lockList и помещает ответ findSuccessor в MessageList
+     * Берем параметр lockId из findSuccessorResponse и завершаем ожидающий
+     * запрос в pendingRequests ответом findSuccessor
      *
      *
      * @param findSuccessorResponse the received findSuccessorResponse message
@@ -500,10 +501,7 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
      */
     @Override
     public void handle(FindSuccessorResponse findSuccessorResponse) throws IOException {
-        synchronized (lockList.get(findSuccessorResponse.getLockId())) {
-            messageList.put(findSuccessorResponse.getLockId(), findSuccessorResponse);
-            lockList.get(findSuccessorResponse.getLockId()).notifyAll();
-        }
+        pendingRequests.complete(findSuccessorResponse.getLockId(), findSuccessorResponse);
     }
 
     /**
@@ -522,37 +520,33 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
         } catch (TimerExpiredException e) {
             throw new UnexpectedBehaviourException();
         }
-        socketNode.sendMessage(new TerminatedMethodMessage(notifyRequest.getLockId()));
+        connection.sendMessage(new TerminatedMethodMessage(notifyRequest.getLockId()));
     }
 
     /**
      * {@inheritDoc}
-     * Берем lockId из findSuccessorResponse и разблокируем разблокирует ожидающий
-     * метод для объекта lockList
+     * Берем lockId из terminatedMethodMessage и завершаем ожидающий
+     * запрос в pendingRequests
      *
      * @param terminatedMethodMessage the received TerminatedMethodMessage message
      * @throws IOException
      */
     @Override
     public void handle(TerminatedMethodMessage terminatedMethodMessage) throws IOException {
-        synchronized (lockList.get(terminatedMethodMessage.getLockId())) {
-            lockList.get(terminatedMethodMessage.getLockId()).notifyAll();
-        }
+        pendingRequests.complete(terminatedMethodMessage.getLockId(), terminatedMethodMessage);
     }
 
     /**
      * {@inheritDoc}
-     * Sends a TerminatedMethodMessage to the requesting node,
-     * after calls the close method of socket node, and close the communication through the caller
+     * Sends a TerminatedMethodMessage to the requesting node, after calls the close method of the connection
      *
      * @param closeRequest the received closeRequest message
      * @throws IOException
      */
     @Override
     public void handle(CloseRequest closeRequest) throws IOException {
-        socketNode.sendMessage(new TerminatedMethodMessage(closeRequest.getLockId()));
-        socketNode.close();
-        node.getSocketManager().closeCommunicator(nodeId);
+        connection.sendMessage(new TerminatedMethodMessage(closeRequest.getLockId()));
+        connection.close();
     }
 
     /**
@@ -571,180 +565,238 @@ public class NodeCommunicator implements NodeInterface, Serializable, MessageHan
         } catch (TimerExpiredException e) {
             throw new UnexpectedBehaviourException();
         }
-        if (predecessor != null)
-            socketNode.sendMessage(new GetPredecessorResponse(new Node(predecessor.getIpAddress(), predecessor.getSocketPort(), node.getDimFingerTable()), getPredecessorRequest.getLockId()));
-        else
-            socketNode.sendMessage(new GetPredecessorResponse(null, getPredecessorRequest.getLockId()));
+        connection.sendMessage(new GetPredecessorResponse(NodeRef.of(predecessor), getPredecessorRequest.getLockId()));
     }
 
     /**
      * {@inheritDoc}
-     * Takes the lockId parameter from the getPredecessorResponse unlocks the method in wait
-     * on the object of lockList and put the getPredecessorResponse in messageList
+     * Takes the lockId parameter from the getPredecessorResponse and completes the request waiting
+     * in pendingRequests with the getPredecessorResponse
      *
      * @param getPredecessorResponse the received getPredecessorResponse message
      * @throws IOException
      */
     @Override
     public void handle(GetPredecessorResponse getPredecessorResponse) throws IOException {
-        synchronized (lockList.get(getPredecessorResponse.getLockId())) {
-            messageList.put(getPredecessorResponse.getLockId(), getPredecessorResponse);
-            lockList.get(getPredecessorResponse.getLockId()).notifyAll();
+        pendingRequests.complete(getPredecessorResponse.getLockId(), getPredecessorResponse);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Calls getSuccessorList method of node, after sends a GetSuccessorListResponse,
+     * containing the obtained list, to the requesting node
+     *
+     * @param getSuccessorListRequest the received getSuccessorListRequest message
+     * @throws IOException
+     */
+    @Override
+    public void handle(GetSuccessorListRequest getSuccessorListRequest) throws IOException {
+        List<NodeInterface> list = new ArrayList<>();
+        try {
+            for (NodeInterface nodeInterface : node.getSuccessorList())
+                list.add(NodeRef.of(nodeInterface));
+        } catch (TimerExpiredException e) {
+            throw new UnexpectedBehaviourException();
         }
+        connection.sendMessage(new GetSuccessorListResponse(list, getSuccessorListRequest.getLockId()));
     }
 
     /**
      * {@inheritDoc}
-     * Calls getDimFingerTable method of node, after sends a GetDimFingerTableResponse,
-     * containing the obtained value, to the requesting node
+     * Takes the lockId parameter from the getSuccessorListResponse and completes the request waiting
+     * in pendingRequests with the getSuccessorListResponse
      *
-     * @param getDimFingerTableRequest the received getDimFingerTableRequest message
+     * @param getSuccessorListResponse the received getSuccessorListResponse message
      * @throws IOException
      */
     @Override
-    public void handle(GetDimFingerTableRequest getDimFingerTableRequest) throws IOException {
-        socketNode.sendMessage(new GetDimFingerTableResponse(node.getDimFingerTable(), getDimFingerTableRequest.getLockId()));
+    public void handle(GetSuccessorListResponse getSuccessorListResponse) throws IOException {
+        pendingRequests.complete(getSuccessorListResponse.getLockId(), getSuccessorListResponse);
     }
 
     /**
      * {@inheritDoc}
-     * Takes the lockId parameter from the getDimFingerTableResponse unlocks the method in wait
-     * on the object of lockList and put the getDimFingerTableResponse in messageList
+     * Calls storeKeyAsync method of node, with the parameters taken from addKeyRequest message.
+     * After sends a AddKeyResponse, containing the node, if it owns the key and its predecessor,
+     * to the requesting node
      *
-     * @param getDimFingerTableResponse the received getDimFingerTableResponse message
+     * @param addKeyRequest the received addKeyRequest message
      * @throws IOException
      */
     @Override
-    public void handle(GetDimFingerTableResponse getDimFingerTableResponse) throws IOException {
-        synchronized (lockList.get(getDimFingerTableResponse.getLockId())) {
-            messageList.put(getDimFingerTableResponse.getLockId(), getDimFingerTableResponse);
-            lockList.get(getDimFingerTableResponse.getLockId()).notifyAll();
-        }
+    public void handle(AddKeyRequest addKeyRequest) throws IOException {
+        KeyReply reply = node.storeKeyAsync(addKeyRequest.getKeyValue(), addKeyRequest.isOwnerOnly()).join();
+        connection.sendMessage(new AddKeyResponse(NodeRef.of(node), reply.getPredecessorId(), reply.isOwner(),
+                addKeyRequest.getLockId()));
     }
 
     /**
      * {@inheritDoc}
-     * Calls getSocketPort method of node, after sends a GetInitialSocketPortResponse,
-     * containing the obtained value, to the requesting node
+     * Takes the lockId parameter from the addKeyResponse and completes the request waiting
+     * in pendingRequests with the addKeyResponse
      *
-     * @param getInitialSocketPortRequest the received getInitialSocketPortRequest message
+     * @param addKeyResponse the received addKeyResponse message
      * @throws IOException
      */
     @Override
-    public void handle(GetInitialSocketPortRequest getInitialSocketPortRequest) throws IOException {
-        socketNode.sendMessage(new GetInitialSocketPortResponse(node.getSocketPort(), getInitialSocketPortRequest.getLockId()));
+    public void handle(AddKeyResponse addKeyResponse) throws IOException {
+        pendingRequests.complete(addKeyResponse.getLockId(), addKeyResponse);
     }
 
     /**
      * {@inheritDoc}
-     * Takes the lockId parameter from the getInitialSocketPortResponse unlocks the method in wait
-     * on the object of lockList and put the getInitialSocketPortResponse in messageList
+     * Calls retrieveKeyAsync method of node, with the parameters taken from findKeyRequest message.
+     * After sends a FindKeyResponse, containing the obtained object, if the node owns the key and its predecessor,
+     * to the requesting node
      *
-     * @param getInitialSocketPortResponse the received getInitialSocketPortResponse message
+     * @param findKeyRequest the received findKeyRequest message
      * @throws IOException
      */
     @Override
-    public void handle(GetInitialSocketPortResponse getInitialSocketPortResponse) throws IOException {
-        synchronized (lockList.get(getInitialSocketPortResponse.getLockId())) {
-            messageList.put(getInitialSocketPortResponse.getLockId(), getInitialSocketPortResponse);
-            lockList.get(getInitialSocketPortResponse.getLockId()).notifyAll();
-        }
+    public void handle(FindKeyRequest findKeyRequest) throws IOException {
+        KeyReply reply = node.retrieveKeyAsync(findKeyRequest.getKey()).join();
+        connection.sendMessage(new FindKeyResponse(reply.getValue(), reply.getPredecessorId(), reply.isOwner(),
+                findKeyRequest.getLockId()));
     }
 
     /**
      * {@inheritDoc}
-     * Calls getSuccessorList method of node, after sends a GetSuccessorListResponse,
-     * containing the obtained list, to the requesting node
+     * Takes the lockId parameter from the findKeyResponse and completes the request waiting
+     * in pendingRequests with the findKeyResponse
      *
-     * @param getSuccessorListRequest the received getSuccessorListRequest message
+     * @param findKeyResponse the received findKeyResponse message
      * @throws IOException
      */
     @Override
-    public void handle(GetSuccessorListRequest getSuccessorListRequest) throws IOException {
-        CopyOnWriteArrayList<NodeInterface> list = new CopyOnWriteArrayList<>();
-        try {
-            for (NodeInterface nodeInterface : node.getSuccessorList()) {
-                list.add(new Node(nodeInterface.getIpAddress(), nodeInterface.getSocketPort(), node.getDimFingerTable()));
-            }
-        } catch (TimerExpiredException e) {
-            throw new UnexpectedBehaviourException();
-        }
-        socketNode.sendMessage(new GetSuccessorListResponse(list, getSuccessorListRequest.getLockId()));
+    public void handle(FindKeyResponse findKeyResponse) throws IOException {
+        pendingRequests.complete(findKeyResponse.getLockId(), findKeyResponse);
     }
 
     /**
      * {@inheritDoc}
-     * Takes the lockId parameter from the getSuccessorListResponse unlocks the method in wait
-     * on the object of lockList and put the getSuccessorListResponse in messageList
+     * The other node has discarded the request because it is saturated: the waiting request fails
+     * immediately, as if its timer had expired
      *
-     * @param getSuccessorListResponse the received getSuccessorListResponse message
+     * @param busyResponse the received busyResponse message
      * @throws IOException
      */
     @Override
-    public void handle(GetSuccessorListResponse getSuccessorListResponse) throws IOException {
-        synchronized (lockList.get(getSuccessorListResponse.getLockId())) {
-            messageList.put(getSuccessorListResponse.getLockId(), getSuccessorListResponse);
-            lockList.get(getSuccessorListResponse.getLockId()).notifyAll();
-        }
+    public void handle(BusyResponse busyResponse) throws IOException {
+        pendingRequests.fail(busyResponse.getLockId());
     }
 
     /**
      * {@inheritDoc}
-     * Calls addKeyToStore method of node, with the parameters taken from addKeyRequest message.
-     * After sends a AddKeyResponse, containing the obtained object, to the requesting node
+     * Sends a PingResponse to the requesting node
      *
-     * @param addKeyRequest the received addKeyRequest message
+     * @param pingRequest the received pingRequest message
      * @throws IOException
      */
     @Override
-    public void handle(AddKeyRequest addKeyRequest) throws IOException {
-        node.addKeyToStore(addKeyRequest.getKeyValue());
-        socketNode.sendMessage(new AddKeyResponse(new Node(node.getIpAddress(), node.getSocketPort()), addKeyRequest.getLockId()));
+    public void handle(PingRequest pingRequest) throws IOException {
+        connection.sendMessage(new PingResponse(pingRequest.getLockId()));
+    }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @param pingResponse the received pingResponse message
+     * @throws IOException
+     */
+    @Override
+    public void handle(PingResponse pingResponse) throws IOException {
+        pendingRequests.complete(pingResponse.getLockId(), pingResponse);
     }
 
     /**
      * {@inheritDoc}
-     * Takes the lockId parameter from the addKeyResponse unlocks the method in wait
-     * on the object of lockList and put the addKeyResponse in messageList
+     * Saves the nodeId and the socketPort of the connecting node, after sends a HelloResponse to it.
+     * The connection is closed if the protocol version is different, or if the node is connecting to itself
      *
-     * @param addKeyResponse the received addKeyResponse message
+     * @param helloMessage the received helloMessage message
      * @throws IOException
      */
     @Override
-    public void handle(AddKeyResponse addKeyResponse) throws IOException {
-        synchronized (lockList.get(addKeyResponse.getLockId())) {
-            messageList.put(addKeyResponse.getLockId(), addKeyResponse);
-            lockList.get(addKeyResponse.getLockId()).notifyAll();
+    public void handle(HelloMessage helloMessage) throws IOException {
+        if (helloMessage.getVersion() != HelloMessage.PROTOCOL_VERSION || helloMessage.getNodeId().equals(node.getNodeId())) {
+            connection.close();
+            return;
         }
+        nodeId = helloMessage.getNodeId();
+        socketPort = helloMessage.getSocketPort();
+        connection.sendMessage(new HelloResponse(helloMessage.getLockId(), HelloMessage.PROTOCOL_VERSION,
+                node.getNodeId(), node.getDimFingerTable(), Hash.getHash().getAlgorithm()));
     }
 
     /**
      * {@inheritDoc}
-     * Calls retrieveKeyFromStore method of node, with the parameters taken from findSuccessorRequest message.
-     * After sends a FindKeyResponse, containing the obtained object, to the requesting node
      *
-     * @param findKeyRequest the received findKeyRequest message
+     * @param helloResponse the received helloResponse message
      * @throws IOException
      */
     @Override
-    public void handle(FindKeyRequest findKeyRequest) throws IOException {
-        socketNode.sendMessage(new FindKeyResponse(node.retrieveKeyFromStore(findKeyRequest.getKey()), findKeyRequest.getLockId()));
+    public void handle(HelloResponse helloResponse) throws IOException {
+        pendingRequests.complete(helloResponse.getLockId(), helloResponse);
     }
 
     /**
      * {@inheritDoc}
-     * Takes the lockId parameter from the findKeyResponse unlocks the method in wait
-     * on the object of lockList and put the findKeyResponse in messageList
+     * Calls nextHopAsync method of node, after sends a NextHopResponse with the successor or the candidates
+     * for the next hop to the requesting node
      *
-     * @param findKeyResponse the received findKeyResponse message
+     * @param nextHopRequest the received nextHopRequest message
      * @throws IOException
      */
     @Override
-    public void handle(FindKeyResponse findKeyResponse) throws IOException {
-        synchronized (lockList.get(findKeyResponse.getLockId())) {
-            messageList.put(findKeyResponse.getLockId(), findKeyResponse);
-            lockList.get(findKeyResponse.getLockId()).notifyAll();
-        }
+    public void handle(NextHopRequest nextHopRequest) throws IOException {
+        node.nextHopAsync(nextHopRequest.getId(), nextHopRequest.getPriority()).whenComplete((nextHop, throwable) -> {
+            if (throwable != null)
+                return;
+            List<NodeInterface> nodes = new ArrayList<>();
+            for (NodeInterface nodeInterface : nextHop.getNodes())
+                nodes.add(NodeRef.of(nodeInterface));
+            try {
+                connection.sendMessage(new NextHopResponse(new NextHop(nextHop.isDone(), nodes),
+                        nextHopRequest.getPriority(), nextHopRequest.getLockId()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param nextHopResponse the received nextHopResponse message
+     * @throws IOException
+     */
+    @Override
+    public void handle(NextHopResponse nextHopResponse) throws IOException {
+        pendingRequests.complete(nextHopResponse.getLockId(), nextHopResponse);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Calls routeLookup method of node, that replies to the origin of the lookup or forwards it
+     *
+     * @param routeLookupRequest the received routeLookupRequest message
+     * @throws IOException
+     */
+    @Override
+    public void handle(RouteLookupRequest routeLookupRequest) throws IOException {
+        node.routeLookup(routeLookupRequest.getId(), routeLookupRequest.getOrigin(),
+                routeLookupRequest.getLockId(), routeLookupRequest.getHops(), routeLookupRequest.getPriority());
+    }
+
+    /**
+     * {@inheritDoc}
+     * The lookup is waited in the table of the SocketManager, not in the one of this connection
+     *
+     * @param lookupResult the received lookupResult message
+     * @throws IOException
+     */
+    @Override
+    public void handle(LookupResult lookupResult) throws IOException {
+        node.getSocketManager().completeLookup(lookupResult);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package com.ssau.chord.model.network;
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.err;
+
+/**
+ * Creates all the threads of the node, so the kind of thread used for the blocking work is chosen in one place.
+ * <p>
+ * With the virtual mode (system property chord.threads=virtual, or Main option -vt) the blocking work
+ * (reader loops of the sockets, handlers of the messages, UpdateNode, controller) runs on virtual threads,
+ * so a node can wait for many thousands of RPCs at the same time without a platform thread for each.
+ * The virtual threads are created by reflection, because the sources are compiled for Java 8: if the JVM
+ * does not support them (older than 21) the platform threads are used.
+ * The schedulers (timeouts, heartbeats, eviction, flush) always use one platform thread.
+ * The mode is read by the MessageDispatcher when it is created, with the first connection of the node
+ */
+public final class NodeThreads {
+    private static volatile ThreadFactory virtualFactory = createVirtualFactory(System.getProperty("chord.threads", "platform"));
+    /**
+     * platform thread that keeps the JVM running in the virtual mode (the virtual threads are daemon),
+     * until the node calls exit when it leaves the network
+     */
+    private static Thread keepAlive;
+
+    private NodeThreads() {
+    }
+
+    /**
+     * Chooses the mode of the threads, must be called before the node creates or joins the network
+     *
+     * @param virtual true to run the blocking work on virtual threads
+     */
+    public static void setVirtual(boolean virtual) {
+        virtualFactory = createVirtualFactory(virtual ? "virtual" : "platform");
+    }
+
+    /**
+     * @return true if the blocking work runs on virtual threads
+     */
+    public static boolean isVirtual() {
+        return virtualFactory != null;
+    }
+
+    private static ThreadFactory createVirtualFactory(String mode) {
+        if (!"virtual".equals(mode))
+            return null;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "chord-virtual-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            err.println("Virtual threads not supported by this JVM, platform threads are used");
+            return null;
+        }
+    }
+
+    /**
+     * @param prefix prefix of the thread names, followed by a progressive number
+     * @return factory of daemon platform threads
+     */
+    static ThreadFactory platformFactory(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param name name of the thread
+     * @return a scheduler with one daemon platform thread
+     */
+    static ScheduledExecutorService newScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for each task in the virtual mode,
+     * otherwise null (the caller uses its pool of platform threads)
+     */
+    static ExecutorService newVirtualPerTaskExecutor() {
+        ThreadFactory factory = virtualFactory;
+        if (factory == null)
+            return null;
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs a long blocking task (a loop that reads a connection, UpdateNode, the controller) on its own thread:
+     * a virtual thread in the virtual mode, otherwise a platform thread that keeps the JVM running
+     *
+     * @param task task to run
+     * @param name name of the thread
+     */
+    public static void start(Runnable task, String name) {
+        ThreadFactory factory = virtualFactory;
+        Thread thread;
+        if (factory != null) {
+            startKeepAlive();
+            thread = factory.newThread(task);
+            thread.setName(name);
+        } else
+            thread = new Thread(task, name);
+        thread.start();
+    }
+
+    private static synchronized void startKeepAlive() {
+        if (keepAlive != null)
+            return;
+        keepAlive = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, "chord-keep-alive");
+        keepAlive.start();
+    }
+}
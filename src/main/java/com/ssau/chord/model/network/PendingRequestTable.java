@@ -0,0 +1,90 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.exceptions.TimerExpiredException;
+import com.ssau.chord.model.network.message.Message;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table of the requests sent to the other node that are still waiting for their response.
+ * Every request is registered with a lockId (the correlation id carried by the request and by its response);
+ * the corresponding future is completed by the handle method of the response, or completed exceptionally
+ * with a TimerExpiredException by the timeout scheduler shared by all the tables of the node
+ */
+class PendingRequestTable {
+    private static final ScheduledThreadPoolExecutor timeoutScheduler = createTimeoutScheduler();
+
+    private final AtomicLong lockId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Message>> pendingRequests = new ConcurrentHashMap<>();
+
+    private static ScheduledThreadPoolExecutor createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                NodeThreads.platformFactory("chord-request-timeout-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * @return a new lockId, never used before by this table
+     */
+    Long nextLockId() {
+        return lockId.getAndIncrement();
+    }
+
+    /**
+     * Registers a request waiting for its response
+     *
+     * @param lockId  lockId of the request
+     * @param timeout in milliseconds, after which the returned future is completed with a TimerExpiredException
+     * @return the future completed with the response
+     */
+    CompletableFuture<Message> register(Long lockId, long timeout) {
+        CompletableFuture<Message> response = new CompletableFuture<>();
+        pendingRequests.put(lockId, response);
+        ScheduledFuture<?> timer = timeoutScheduler.schedule(() -> {
+            if (pendingRequests.remove(lockId, response))
+                response.completeExceptionally(new TimerExpiredException());
+        }, timeout, TimeUnit.MILLISECONDS);
+        response.whenComplete((message, throwable) -> timer.cancel(false));
+        return response;
+    }
+
+    /**
+     * Completes the request correspondent to lockId with the received response.
+     * Responses that arrive after the timer expired are discarded
+     *
+     * @param lockId  lockId carried by the response
+     * @param message the received response
+     */
+    void complete(Long lockId, Message message) {
+        CompletableFuture<Message> response = pendingRequests.remove(lockId);
+        if (response != null)
+            response.complete(message);
+    }
+
+    /**
+     * Completes the request correspondent to lockId with a TimerExpiredException, without waiting for the timer
+     *
+     * @param lockId lockId of the failed request
+     */
+    void fail(Long lockId) {
+        CompletableFuture<Message> response = pendingRequests.remove(lockId);
+        if (response != null)
+            response.completeExceptionally(new TimerExpiredException());
+    }
+
+    /**
+     * Called when the other node has disconnected: no response will arrive, so all the waiting requests fail
+     */
+    void failAll() {
+        for (Long pendingLockId : pendingRequests.keySet())
+            fail(pendingLockId);
+    }
+}
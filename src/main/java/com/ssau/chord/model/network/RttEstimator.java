@@ -0,0 +1,74 @@
+package com.ssau.chord.model.network;
+
+
+/**
+ * Round trip time estimator of a connection, computed as TCP does (RFC 6298): smoothed rtt and rtt variation
+ * are updated with every measured response, and the timeout of the requests is
+ * srtt + 4 * rttvar, bounded by chord.rpc.minTimeoutMillis and chord.rpc.maxTimeoutMillis.
+ * Before the first measure the timeout is the maximum; every expired timer doubles it until the next measure
+ */
+class RttEstimator {
+    static final long MIN_TIMEOUT = Long.getLong("chord.rpc.minTimeoutMillis", 200);
+    static final long MAX_TIMEOUT = Long.getLong("chord.rpc.maxTimeoutMillis", 3000);
+    /**
+     * clock granularity, in milliseconds
+     */
+    private static final double GRANULARITY = 1;
+
+    private double smoothedRtt = -1;
+    private double rttVariation;
+    private long timeout = MAX_TIMEOUT;
+
+    /**
+     * Updates the estimate with the round trip time of a response
+     *
+     * @param rtt measured round trip time, in milliseconds
+     */
+    synchronized void sample(double rtt) {
+        if (smoothedRtt < 0) {
+            smoothedRtt = rtt;
+            rttVariation = rtt / 2;
+        } else {
+            rttVariation = 0.75 * rttVariation + 0.25 * Math.abs(smoothedRtt - rtt);
+            smoothedRtt = 0.875 * smoothedRtt + 0.125 * rtt;
+        }
+        timeout = clamp(Math.round(Math.ceil(smoothedRtt + Math.max(GRANULARITY, 4 * rttVariation))));
+    }
+
+    /**
+     * Called when the timer of a request has expired: the timeout is doubled
+     */
+    synchronized void backOff() {
+        timeout = clamp(timeout * 2);
+    }
+
+    private static long clamp(long timeout) {
+        return Math.min(Math.max(timeout, MIN_TIMEOUT), MAX_TIMEOUT);
+    }
+
+    /**
+     * @return the timeout of the next request, in milliseconds
+     */
+    synchronized long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return the smoothed round trip time in milliseconds, or -1 if no response has been measured yet
+     */
+    synchronized double getSmoothedRtt() {
+        return smoothedRtt;
+    }
+
+    /**
+     * @return the round trip time variation, in milliseconds
+     */
+    synchronized double getRttVariation() {
+        return rttVariation;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RTT: %.3f ms\tRTTVAR: %.3f ms\tTimeout: %d ms", smoothedRtt, rttVariation, timeout);
+    }
+}
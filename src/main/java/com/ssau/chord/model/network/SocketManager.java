@@ -3,30 +3,52 @@ package com.ssau.chord.model.network;
 
 
 import com.ssau.chord.model.exceptions.ConnectionErrorException;
-import com.ssau.chord.model.exceptions.TimerExpiredException;
-import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
-import com.ssau.chord.model.network.message.MessageHandler;
-import com.ssau.chord.model.node.Hash;
+import com.ssau.chord.model.network.message.LookupResult;
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.Priority;
 import com.ssau.chord.model.node.Node;
 import com.ssau.chord.model.node.NodeInterface;
+import com.ssau.chord.model.node.NodeRef;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-
-import static java.lang.System.err;
-import static java.lang.System.exit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handle the socket connections of the node
  * node is the owner of the SocketManager
- * socketList карта между nodeId и соответствующими исходящими соединениями сокета
- * socketNumber карта между nodeId и числом от крытых коннектов с этой нодой
+ * connections карта между nodeId и соответствующими исходящими соединениями сокета,
+ * each with the number of users of the connection
+ * <p>
+ * The outgoing connections are shared: createConnection returns the open connection towards the nodeId
+ * (only one connect is done when several threads ask for the same node), and closeCommunicator releases it.
+ * The release is done on the returned communicator, not on the nodeId: after a reconnection the entry of the
+ * nodeId is a new one, that the late releases of the users of the old connection must not decrement.
+ * A connection without users is kept open for chord.pool.idleMillis milliseconds, so the next operations
+ * towards the same node reuse it, and then it is closed by the evictor
+ * <p>
+ * The virtual nodes of the process share the SocketManager of the first node: localNodes contains all of them,
+ * a connection towards one of them returns the Node itself, and a disconnection is checked by all of them
  */
 public class SocketManager {
+    private static final long IDLE_TIMEOUT = Long.getLong("chord.pool.idleMillis", 30000);
+    private static final ScheduledExecutorService evictor = NodeThreads.newScheduler("chord-connection-evictor");
+    private static volatile Transport transport = new SocketTransport();
     private volatile Node node;
-    private volatile Map<Long, NodeInterface> socketList;
-    private volatile Map<Long, Integer> socketNumber;
+    private final Map<Long, Node> localNodes = new ConcurrentHashMap<>();
+    private final Map<Long, PooledConnection> connections = new ConcurrentHashMap<>();
+    private final FailureDetector failureDetector = new FailureDetector(this);
+    /**
+     * lookups with direct reply started by the node, waiting for the LookupResult of the owner of the id
+     */
+    private final PendingRequestTable directLookups = new PendingRequestTable();
 
     /**
      * Initialize class variables
@@ -35,117 +57,332 @@ public class SocketManager {
      */
     public SocketManager(Node node) {
         this.node = node;
-        this.socketList = new HashMap<>();
-        this.socketNumber = new HashMap<>();
+        localNodes.put(node.getNodeId(), node);
+        long period = Math.max(IDLE_TIMEOUT / 2, 1);
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+        failureDetector.start();
+    }
+
+    /**
+     * Adds a virtual node of the process, that uses the connections and the listening port of this SocketManager.
+     * Must be called before the virtual node notifies its successor, so the other nodes can connect to it
+     *
+     * @param virtualNode the virtual node, with its nodeId already computed
+     */
+    public void addLocalNode(Node virtualNode) {
+        localNodes.put(virtualNode.getNodeId(), virtualNode);
+    }
+
+    /**
+     * @param nodeId nodeId of a node
+     * @return the node of this process with nodeId (the first node or a virtual node), null if it is not local
+     */
+    public Node getLocalNode(Long nodeId) {
+        return localNodes.get(nodeId);
+    }
+
+    /**
+     * @return the nodes of this process: the first node and its virtual nodes
+     */
+    public Collection<Node> getLocalNodes() {
+        return localNodes.values();
+    }
+
+    /**
+     * @return the transport used to open and accept the connections
+     */
+    public static Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Chooses the transport, must be called before the node creates or joins the network
+     *
+     * @param transport transport used to open and accept the connections
+     */
+    public static void setTransport(Transport transport) {
+        SocketManager.transport = transport;
     }
 
     /**
      * Used to create the outgoing socket connections
      *
      * @param connectionNode node to which you want to open the connection
-     * @return if the nodeId of connectionNode is equal to that of node, return node
+     * @return if the nodeId of connectionNode is equal to that of node or of one of its virtual nodes, return it
      * if there is already a open connection to the connectionNode, return that one increasing the
-     * corresponding socketNumber, otherwise creates a new connection, add it to socketNumber, and return it
+     * corresponding number of users, otherwise creates a new connection and return it
      * @throws ConnectionErrorException if the connectionNode is not reachable (wrong ipAddress or port)
      */
-    public synchronized NodeInterface createConnection(NodeInterface connectionNode) throws ConnectionErrorException {
+    public NodeInterface createConnection(NodeInterface connectionNode) throws ConnectionErrorException {
         Long searchedNodeId = connectionNode.getNodeId();
-        if (searchedNodeId.equals(node.getNodeId())) { //nel caso in cui ritorno me stesso non ho bisogno di aggiornare il numero di connessioni
-            //out.println("NUOVA CONNESSIONE: RITORNO ME STESSO");
-            return node;
-        } else {
-            NodeInterface searchedNode = socketList.get(searchedNodeId);
-            if (searchedNode != null) {
-                //out.println("DALLA LISTA: " + searchedNodeId + ", NUM CONNECTION: " + (socketNumber.get(searchedNodeId)+1));
-                int n = socketNumber.get(searchedNodeId); //vecchio numero di connessioni
-                socketNumber.replace(searchedNodeId, n + 1); //faccio replace con nodeId e n+1
-                return searchedNode;
-            } else {
-                //out.println("NUOVA: " + searchedNodeId);
-                NodeCommunicator createdNode = new NodeCommunicator(connectionNode.getIpAddress(), connectionNode.getSocketPort(), node, connectionNode.getNodeId());
-                socketList.put(searchedNodeId, createdNode);
-                socketNumber.put(searchedNodeId, 1); //quando creo un nodo inserisco nella lista <nodeId, 1>
-                return createdNode;
+        Node localNode = localNodes.get(searchedNodeId);
+        if (localNode != null) //nel caso in cui ritorno me stesso non ho bisogno di aggiornare il numero di connessioni
+            return localNode;
+        while (true) {
+            PooledConnection pooled = connections.get(searchedNodeId);
+            if (pooled == null) {
+                PooledConnection created = new PooledConnection();
+                pooled = connections.putIfAbsent(searchedNodeId, created);
+                if (pooled == null)
+                    return connect(connectionNode, created);
+            }
+            if (!pooled.acquire()) { //the evictor is closing it
+                connections.remove(searchedNodeId, pooled);
+                continue;
+            }
+            try {
+                return pooled.communicator.join();
+            } catch (CompletionException e) { //the connect of the thread that created the entry has failed
+                throw new ConnectionErrorException();
             }
         }
     }
 
+    /**
+     * Opens the connection of a new entry, out of any lock: the other threads that ask for the same node
+     * wait for the communicator of the entry
+     */
+    private NodeInterface connect(NodeInterface connectionNode, PooledConnection created) throws ConnectionErrorException {
+        Long searchedNodeId = connectionNode.getNodeId();
+        try {
+            NodeCommunicator createdNode = new NodeCommunicator(connectionNode.getIpAddress(),
+                    connectionNode.getSocketPort(), node, searchedNodeId);
+            created.communicator.complete(createdNode);
+            return createdNode;
+        } catch (ConnectionErrorException | RuntimeException e) {
+            connections.remove(searchedNodeId, created);
+            created.communicator.completeExceptionally(e);
+            throw e;
+        }
+    }
+
     /**
      * Используется для создания входящих подключений к сокетам.
-     * Метод, вызываемый только конструктором узла сокета
+     * Метод, вызываемый только транспортом, когда он принимает новое соединение.
+     * It does not wait for the other node: nodeId and socketPort are set when its HelloMessage arrives
      *
-     * @param socketNode socketNode of node that is connecting
+     * @param connection accepted connection of node that is connecting
      * @param ipAddress  ipAddress of node that is connecting
      */
-    synchronized void createConnection(SocketNode socketNode, String ipAddress) {
-        NodeInterface createdNode = new NodeCommunicator(socketNode, node, ipAddress);
-        socketNode.setMessageHandler((MessageHandler) createdNode);
-        int port;
+    void createConnection(Connection connection, String ipAddress) {
+        connection.start(new NodeCommunicator(connection, node, ipAddress));
+    }
+
+    /**
+     * Starts a lookup with direct reply: the RouteLookupRequest is forwarded by the nodes of the path without
+     * waiting, and the owner of id sends the LookupResult directly to this node.
+     * The number of hops is not known, so the timeout is the maximum one
+     *
+     * @param id       NodeId to be found
+     * @param nextNode first hop of the lookup
+     * @param priority priority of the lookup, kept by every node of the path
+     * @return future completed with the successor of id, or exceptionally with a TimerExpiredException
+     */
+    public CompletableFuture<NodeInterface> routeLookup(Long id, NodeInterface nextNode, Priority priority) {
+        Long lookupId = directLookups.nextLockId();
+        CompletableFuture<Message> result = directLookups.register(lookupId, RttEstimator.MAX_TIMEOUT);
         try {
-            port = createdNode.getInitialSocketPort();
-        } catch (TimerExpiredException e) {
-            err.println("Error of connection");
-            exit(1);
-            throw new UnexpectedBehaviourException();
+            nextNode.routeLookup(id, NodeRef.of(node), lookupId, 1, priority);
+        } catch (IOException e) {
+            directLookups.fail(lookupId);
         }
-        Long createdNodeId = Hash.getHash().calculateHash(ipAddress, port);
-        if (!createdNodeId.equals(node.getNodeId())) {
-            createdNode.setNodeId(createdNodeId);
-            createdNode.setSocketPort(port);
-        } else {
-            try {
-                createdNode.close();
-            } catch (IOException e) {
-                throw new UnexpectedBehaviourException();
-            }
+        return result.thenApply(message -> ((LookupResult) message).getNode());
+    }
+
+    /**
+     * Sends the successor found by a lookup with direct reply to the node that started it.
+     * If origin is not reachable the result is lost, and origin fails the lookup when its timer expires
+     *
+     * @param origin    the node that started the lookup
+     * @param lookupId  id of the lookup in the table of origin
+     * @param successor the successor of the searched id
+     * @param priority  priority of the lookup
+     */
+    public void replyLookup(NodeInterface origin, Long lookupId, NodeInterface successor, Priority priority) {
+        LookupResult lookupResult = new LookupResult(NodeRef.of(successor), priority, lookupId);
+        if (localNodes.containsKey(origin.getNodeId())) {
+            completeLookup(lookupResult);
+            return;
+        }
+        NodeInterface communicator;
+        try {
+            communicator = createConnection(origin);
+        } catch (ConnectionErrorException e) {
+            return;
+        }
+        try {
+            ((NodeCommunicator) communicator).sendLookupResult(lookupResult);
+        } catch (IOException ignored) {
+            //origin fails the lookup when its timer expires
+        } finally {
+            closeCommunicator(communicator);
         }
-        //out.println("CREO: " + createdNode.getNodeId());
     }
 
     /**
-     * Если NodeID имеет число открытых подключений большее или равное 2:
-     * просто уменьшите на единицу количество подключений
+     * Completes the lookup with direct reply started by this node
      *
-     * Если NodeID имеет только 1 открытое соединение:
-     * закройте соединение и удалите его из списка сокетов и номера сокета
+     * @param lookupResult the received result, with the id of the lookup
+     */
+    void completeLookup(LookupResult lookupResult) {
+        directLookups.complete(lookupResult.getLockId(), lookupResult);
+    }
+
+    /**
+     * Measures the distance in the network of a node, for the proximity neighbor selection of the fingers:
+     * a PingRequest is sent on the pooled connection (opened if there is none), and the smoothed round trip time
+     * of the connection is returned (the measured one if it is the first response of the connection)
      *
-     * @param nodeId nodeId of node to which we want close the connection
-     */
-    public synchronized void closeCommunicator(Long nodeId) {
-        //eseguo solo se il nodeId da rimuovere non è il mio
-        if (!node.getNodeId().equals(nodeId)) { //non posso rimuovere me stesso dalla lista
-            Integer n = socketNumber.get(nodeId); //old connection number
-            if (n != null) {
-                if (n == 1) { //removes the connection
-                    socketNumber.remove(nodeId);
-                    socketList.remove(nodeId);
-                    //out.println("RIMOSSO: " + nodeId);
-                } else { //decreases the number of connection
-                    socketNumber.replace(nodeId, n - 1);
-                    //out.println("DIMINUISCO: " + nodeId + ", NUM CONNECTION: " + socketNumber.get(nodeId));
-                }
-            }
+     * @param probedNode node to probe
+     * @return future completed with the round trip time in milliseconds, 0 for the nodes of this process
+     * and Double.MAX_VALUE if the node is not reachable; it never fails
+     */
+    public CompletableFuture<Double> probeRtt(NodeInterface probedNode) {
+        if (localNodes.containsKey(probedNode.getNodeId()))
+            return CompletableFuture.completedFuture(0.0);
+        NodeCommunicator communicator;
+        try {
+            communicator = (NodeCommunicator) createConnection(probedNode);
+        } catch (ConnectionErrorException e) {
+            return CompletableFuture.completedFuture(Double.MAX_VALUE);
         }
+        long start = System.nanoTime();
+        return communicator.ping().handle((message, throwable) -> {
+            closeCommunicator(communicator);
+            if (throwable != null)
+                return Double.MAX_VALUE;
+            double smoothedRtt = communicator.getRttEstimator().getSmoothedRtt();
+            return smoothedRtt < 0 ? (System.nanoTime() - start) / 1e6 : smoothedRtt;
+        });
     }
 
     /**
-     * Called only when the connection to the disconnectedId is dropped
+     * Уменьшите на единицу количество пользователей подключения.
+     * The connection without users is closed by the evictor after IDLE_TIMEOUT milliseconds.
+     * Nothing is done if communicator is a node of this process, or if it is no longer the pooled connection
+     * of its nodeId (it has been dropped and maybe replaced by a new one)
+     *
+     * @param communicator the connection returned by createConnection
+     */
+    public void closeCommunicator(NodeInterface communicator) {
+        PooledConnection pooled = connections.get(communicator.getNodeId());
+        if (pooled != null && pooled.holds(communicator))
+            pooled.release();
+    }
+
+    /**
+     * Called only when the connection to the disconnectedId is dropped. The pooled entry is removed only if it
+     * is still the dropped connection, so a new connection opened in the meantime is kept
      *
      * @param disconnectedId nodeId of disconnected node
+     * @param communicator   the dropped connection
+     */
+    void removeNode(Long disconnectedId, NodeCommunicator communicator) {
+        for (Node localNode : localNodes.values())
+            localNode.checkDisconnectedNode(disconnectedId);
+        PooledConnection pooled = connections.get(disconnectedId);
+        if (pooled != null && pooled.holds(communicator))
+            connections.remove(disconnectedId, pooled);
+    }
+
+    /**
+     * @return the open outgoing connections, monitored by the FailureDetector
+     */
+    Map<Long, NodeCommunicator> getOpenConnections() {
+        Map<Long, NodeCommunicator> openConnections = new HashMap<>();
+        for (Map.Entry<Long, PooledConnection> entry : connections.entrySet()) {
+            PooledConnection pooled = entry.getValue();
+            if (pooled.users.get() >= 0 && pooled.communicator.isDone() && !pooled.communicator.isCompletedExceptionally())
+                openConnections.put(entry.getKey(), pooled.communicator.join());
+        }
+        return openConnections;
+    }
+
+    /**
+     * Closes the connections that have had no users for IDLE_TIMEOUT milliseconds
      */
-    synchronized void removeNode(Long disconnectedId) {
-        node.checkDisconnectedNode(disconnectedId);
-        socketList.remove(disconnectedId);
-        socketNumber.remove(disconnectedId);
+    private void evictIdleConnections() {
+        long now = System.nanoTime();
+        for (Map.Entry<Long, PooledConnection> entry : connections.entrySet()) {
+            PooledConnection pooled = entry.getValue();
+            if (pooled.isIdleSince(now - TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT)) && pooled.evict()) {
+                connections.remove(entry.getKey(), pooled);
+                try {
+                    pooled.communicator.join().close();
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
     }
 
     @Override
     public String toString() {
         String string = "SOCKET OPEN\n";
-        for (Map.Entry it :
-                socketList.entrySet()) {
-            string = string + "Node id: " + it.getKey() + "\tNumber conn: " + socketNumber.get(it.getKey()) + "\n";
+        for (Map.Entry<Long, PooledConnection> it :
+                connections.entrySet()) {
+            CompletableFuture<NodeCommunicator> communicator = it.getValue().communicator;
+            string = string + "Node id: " + it.getKey() + "\tNumber conn: " + it.getValue().users.get();
+            if (communicator.isDone() && !communicator.isCompletedExceptionally())
+                string = string + "\t" + communicator.join().getRttEstimator();
+            string = string + "\n";
         }
         return string;
     }
-}
\ No newline at end of file
+
+    /**
+     * Outgoing connection of the pool: the communicator is completed by the thread that opens the connection.
+     * users is the number of users of the connection, or -1 when the evictor has claimed it
+     */
+    private static final class PooledConnection {
+        private final CompletableFuture<NodeCommunicator> communicator = new CompletableFuture<>();
+        private final AtomicInteger users = new AtomicInteger(1);
+        private volatile long idleSince;
+
+        /**
+         * @return false if the connection is being closed by the evictor
+         */
+        boolean acquire() {
+            while (true) {
+                int n = users.get();
+                if (n < 0)
+                    return false;
+                if (users.compareAndSet(n, n + 1))
+                    return true;
+            }
+        }
+
+        void release() {
+            while (true) {
+                int n = users.get();
+                if (n <= 0)
+                    return;
+                if (users.compareAndSet(n, n - 1)) {
+                    if (n == 1)
+                        idleSince = System.nanoTime();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return true if the connection has been opened and it is communicator
+         */
+        boolean holds(NodeInterface communicator) {
+            return this.communicator.isDone() && !this.communicator.isCompletedExceptionally()
+                    && this.communicator.join() == communicator;
+        }
+
+        boolean isIdleSince(long time) {
+            return users.get() == 0 && communicator.isDone() && !communicator.isCompletedExceptionally()
+                    && idleSince - time <= 0;
+        }
+
+        /**
+         * @return true if the connection had no users and has been claimed by the evictor
+         */
+        boolean evict() {
+            return users.compareAndSet(0, -1);
+        }
+    }
+}
@@ -5,37 +5,60 @@ package com.ssau.chord.model.network;
 import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
 import com.ssau.chord.model.network.message.Message;
 import com.ssau.chord.model.network.message.MessageHandler;
+import com.ssau.chord.model.network.message.Priority;
 import com.ssau.chord.model.node.NodeInterface;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.io.*;
 import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Class that deals with the sending and receiving of Messages to/from the other node
+ * Class that deals with the sending and receiving of Messages to/from the other node.
+ * The messages are written as binary frames by MessageCodec.
+ * <p>
+ * The sent messages are put in an outbound queue: the sending thread that finds no writer active becomes
+ * the writer and writes all the queued messages (at most chord.write.maxBatch per flush), so the messages
+ * sent concurrently on the same connection share one flush. With chord.write.maxDelayMicros greater than 0
+ * the flush is delayed by at most that time to collect more messages, unless a whole batch is already queued.
+ * The maintenance messages have their own queue, written before the client one and never delayed
  */
-public class SocketNode implements Runnable, Serializable {
+public class SocketNode implements Connection, Runnable, Serializable {
+    private static final long MAX_DELAY_MICROS = Long.getLong("chord.write.maxDelayMicros", 0);
+    private static final int MAX_BATCH = Integer.getInteger("chord.write.maxBatch", 64);
+    private static final ScheduledExecutorService flushScheduler = NodeThreads.newScheduler("chord-write-flush");
+
     private final boolean connectionIn;
-    private transient ObjectOutputStream socketOutput;
-    private transient ObjectInputStream socketInput;
+    private transient DataOutputStream socketOutput;
+    private transient DataInputStream socketInput;
+    private transient MessageCodec codec = new MessageCodec();
+    private transient byte[] inputFrame = new byte[256];
+    private transient Executor orderedLane = MessageDispatcher.getDispatcher().newOrderedLane();
+    private transient Queue<Message> maintenanceOutbound = new ConcurrentLinkedQueue<>();
+    private transient Queue<Message> clientOutbound = new ConcurrentLinkedQueue<>();
+    private transient AtomicInteger outboundSize = new AtomicInteger();
+    private transient ReentrantLock writeLock = new ReentrantLock();
+    private transient AtomicBoolean flushScheduled = new AtomicBoolean();
     private transient volatile MessageHandler messageHandler;
     private transient volatile boolean connected;
 
     /**
-     * Constructor called from NodeCommunicator's constructor when we want to create a connection towards
+     * Constructor called from SocketTransport when we want to create a connection towards
      * another node (so for outgoing connections)
      *
-     * @param socketInput    socketInputStream created by NodeCommunicator
-     * @param socketOutput   socketOutputStream created by NodeCommunicator
-     * @param messageHandler NodeCommunicator instance that handles the received messages
+     * @param socketOut socket created by SocketTransport
+     * @throws IOException if an I/O error occurs when creating the streams
      */
-    SocketNode(ObjectInputStream socketInput, ObjectOutputStream socketOutput, MessageHandler messageHandler) {
-        this.messageHandler = messageHandler;
-        this.socketInput = socketInput;
-        this.socketOutput = socketOutput;
+    SocketNode(Socket socketOut) throws IOException {
+        this.socketInput = new DataInputStream(new BufferedInputStream(socketOut.getInputStream()));
+        this.socketOutput = new DataOutputStream(new BufferedOutputStream(socketOut.getOutputStream()));
         this.connected = true;
         this.connectionIn = false;
     }
@@ -49,23 +72,28 @@ public class SocketNode implements Runnable, Serializable {
     SocketNode(NodeInterface node, Socket socketIn) {
         this.connectionIn = true;
         try {
-            this.socketInput = new ObjectInputStream(socketIn.getInputStream());
-            this.socketOutput = new ObjectOutputStream(socketIn.getOutputStream());
+            this.socketInput = new DataInputStream(new BufferedInputStream(socketIn.getInputStream()));
+            this.socketOutput = new DataOutputStream(new BufferedOutputStream(socketIn.getOutputStream()));
         } catch (IOException e) {
             this.close();
         }
         this.connected = true;
-        Executors.newCachedThreadPool().execute(() ->
-                node.getSocketManager().createConnection(this, socketIn.getInetAddress().getHostAddress()));
+        node.getSocketManager().createConnection(this, socketIn.getInetAddress().getHostAddress());
     }
 
-    public void setMessageHandler(MessageHandler messageHandler) {
+    /**
+     * {@inheritDoc}
+     * Starts the thread that reads the messages
+     */
+    @Override
+    public void start(MessageHandler messageHandler) {
         this.messageHandler = messageHandler;
+        NodeThreads.start(this, "chord-socket-reader");
     }
 
     /**
      * While the node is connected (connected == true) the method calls the getMessage method to receives the
-     * message from the other node
+     * message from the other node, and passes it to the MessageDispatcher
      */
     @Override
     public void run() {
@@ -73,56 +101,122 @@ public class SocketNode implements Runnable, Serializable {
             Message message = getMessage();
             if (!connected)
                 break;
-            Executors.newCachedThreadPool().execute(() -> {
-                try {
-                    message.handle(messageHandler);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            MessageDispatcher.getDispatcher().dispatch(message, messageHandler, this, orderedLane);
         }
     }
 
     /**
      * Receives the message from the other node,
-     * and when the other node has disconnected calls the nodeDisconnected method of NodeCommunicator
+     * and when the other node has disconnected (or has sent a malformed frame)
+     * calls the nodeDisconnected method of NodeCommunicator
      *
      * @return the received message
      */
     private Message getMessage() {
         try {
-            return (Message) socketInput.readObject();
+            int length = socketInput.readInt();
+            if (length <= 0 || length > MessageCodec.MAX_FRAME_LENGTH)
+                throw new IOException("Invalid frame length " + length);
+            if (inputFrame.length < length)
+                inputFrame = new byte[length];
+            socketInput.readFully(inputFrame, 0, length);
+            return MessageCodec.decode(ByteBuffer.wrap(inputFrame, 0, length));
         } catch (IOException e) {
+            boolean closedByOtherNode = connected; //false if the connection has been closed by this node
             connected = false;
-            if (!connectionIn)
+            if (closedByOtherNode && !connectionIn)
                 messageHandler.nodeDisconnected();
             this.close();
-        } catch (ClassNotFoundException e) {
-            throw new UnexpectedBehaviourException();
         }
         return null;
     }
 
     /**
-     * Sends the message to the other node
+     * Sends the message to the other node: the message is queued, and written by this thread
+     * if no other thread is writing (or by the flush scheduler if the flush is delayed)
      *
      * @param message message to send
      * @throws IOException if an I/O error occurs
      */
-    synchronized void sendMessage(Message message) throws IOException {
-        socketOutput.reset();
-        socketOutput.writeObject(message);
+    @Override
+    public void sendMessage(Message message) throws IOException {
+        if (!connected)
+            throw new IOException("Connection closed");
+        boolean maintenance = message.getPriority() == Priority.MAINTENANCE;
+        (maintenance ? maintenanceOutbound : clientOutbound).add(message);
+        if (outboundSize.incrementAndGet() < MAX_BATCH && MAX_DELAY_MICROS > 0 && !maintenance) {
+            if (flushScheduled.compareAndSet(false, true))
+                flushScheduler.schedule(this::scheduledFlush, MAX_DELAY_MICROS, TimeUnit.MICROSECONDS);
+            return;
+        }
+        writeQueued();
+    }
+
+    private void scheduledFlush() {
+        flushScheduled.set(false);
+        try {
+            writeQueued();
+        } catch (IOException e) {
+            connected = false;
+            this.close();
+        }
+    }
+
+    /**
+     * Writes the queued messages, flushing once every MAX_BATCH messages. Only one thread at a time is the
+     * writer; the others return immediately, because their messages are written by the active writer
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeQueued() throws IOException {
+        while (hasQueued() && writeLock.tryLock()) {
+            try {
+                writeBatch();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private boolean hasQueued() {
+        return !maintenanceOutbound.isEmpty() || !clientOutbound.isEmpty();
+    }
+
+    /**
+     * Writes at most MAX_BATCH messages, taking the maintenance ones first
+     */
+    private void writeBatch() throws IOException {
+        int batch = 0;
+        Message message;
+        while (batch < MAX_BATCH && ((message = maintenanceOutbound.poll()) != null || (message = clientOutbound.poll()) != null)) {
+            outboundSize.decrementAndGet();
+            ByteBuffer frame = codec.encode(message);
+            socketOutput.write(frame.array(), frame.position(), frame.remaining());
+            batch++;
+        }
         socketOutput.flush();
     }
 
     /**
-     * Close the socketInputStream and the socketOutputStream
+     * Writes the messages still queued (if the other node is reachable),
+     * then close the socketInputStream and the socketOutputStream
      */
-    void close() {
+    @Override
+    public void close() {
+        this.connected = false;
+        writeLock.lock();
+        try {
+            while (hasQueued())
+                writeBatch();
+        } catch (IOException e) {
+            maintenanceOutbound.clear();
+            clientOutbound.clear();
+        } finally {
+            writeLock.unlock();
+        }
         try {
             socketInput.close();
             socketOutput.close();
-            this.connected = false;
         } catch (IOException e) {
             throw new UnexpectedBehaviourException();
         }
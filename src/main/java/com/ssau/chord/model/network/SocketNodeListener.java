@@ -8,16 +8,15 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Class that manages the accepting of incoming connections
  */
 public class SocketNodeListener implements Runnable, Serializable {
-    private static Boolean active = true;
+    private volatile boolean active = true;
     private int socketPort;
     private transient Node node;
+    private transient volatile ServerSocket serverSocket;
 
     /**
      * @param node       node in listening (that will be passed as argument for the creation of SocketNode)
@@ -29,28 +28,37 @@ public class SocketNodeListener implements Runnable, Serializable {
     }
 
     /**
-     * Called to stop the listening when the node has disconnected
+     * Called to stop the listening when the node has disconnected: closes the ServerSocket, so that
+     * the accept waiting for a connection returns
      */
-    public static void stopListening() {
+    public void stopListening() {
         active = false;
+        ServerSocket listeningSocket = serverSocket;
+        if (listeningSocket != null) {
+            try {
+                listeningSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
      * Creates a ServerSocket on the socketPort that remains in wait of connection,
-     * and foreach connection starts a SocketNode on a different thread
+     * and foreach connection creates a SocketNode (that is started by the SocketManager)
      */
     @Override
     public void run() {
         try (ServerSocket serverSocket = new ServerSocket(socketPort)) {
-            ExecutorService executors = Executors.newCachedThreadPool();
+            this.serverSocket = serverSocket;
             while (active) {
                 Socket socketIn = serverSocket.accept();
                 //out.println("----- Benvenuto nella Repubblica di Firenze -----");
-                SocketNode socketNode = new SocketNode(node, socketIn);
-                executors.submit(socketNode);
+                new SocketNode(node, socketIn);
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            if (active)
+                e.printStackTrace();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.exceptions.ConnectionErrorException;
+import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+import com.ssau.chord.model.node.Node;
+import com.ssau.chord.model.node.NodeInterface;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport with blocking sockets: every connection has its own SocketNode reading thread,
+ * and a SocketNodeListener accepts the incoming connections
+ */
+public class SocketTransport implements Transport {
+    private final Map<Node, SocketNodeListener> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public Connection connect(NodeInterface node, String ipAddress, int socketPort) throws ConnectionErrorException {
+        Socket socket;
+        try {
+            socket = new Socket(ipAddress, socketPort);
+        } catch (IOException e) {
+            throw new ConnectionErrorException();
+        }
+        try {
+            return new SocketNode(socket);
+        } catch (IOException e) {
+            throw new UnexpectedBehaviourException();
+        }
+    }
+
+    @Override
+    public void listen(Node node, int socketPort) {
+        SocketNodeListener listener = new SocketNodeListener(node, socketPort);
+        listeners.put(node, listener);
+        NodeThreads.start(listener, "chord-socket-listener");
+    }
+
+    @Override
+    public void stopListening(Node node) {
+        SocketNodeListener listener = listeners.remove(node);
+        if (listener != null)
+            listener.stopListening();
+    }
+}
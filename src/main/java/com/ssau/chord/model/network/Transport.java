@@ -0,0 +1,44 @@
+package com.ssau.chord.model.network;
+
+
+import com.ssau.chord.model.exceptions.ConnectionErrorException;
+import com.ssau.chord.model.node.Node;
+import com.ssau.chord.model.node.NodeInterface;
+
+/**
+ * Creates the connections between nodes. The transport used by the node is chosen at startup
+ * (see SocketManager.setTransport), and it is shared by all the nodes of the JVM.
+ * <p>
+ * A transport delivers the messages as Connection: NodeCommunicator sends them with sendMessage, and the
+ * transport passes the received ones to the MessageDispatcher. Available transports are SocketTransport
+ * (blocking sockets), NioTransport (non-blocking channels) and LocalTransport (nodes in the same JVM)
+ */
+public interface Transport {
+
+    /**
+     * Opens an outgoing connection
+     *
+     * @param node       node that opens the connection
+     * @param ipAddress  ipAddress of the other node
+     * @param socketPort socketPort of the other node
+     * @return the opened connection, not yet started
+     * @throws ConnectionErrorException if the other node is not reachable
+     */
+    Connection connect(NodeInterface node, String ipAddress, int socketPort) throws ConnectionErrorException;
+
+    /**
+     * Starts accepting the incoming connections; each accepted connection is passed (not yet started) to
+     * the createConnection method of the node's SocketManager, on the accepting thread (it does not block)
+     *
+     * @param node       node in listening
+     * @param socketPort socketPort to which the node accepts incoming connections
+     */
+    void listen(Node node, int socketPort);
+
+    /**
+     * Called to stop the listening when the node has disconnected
+     *
+     * @param node node in listening
+     */
+    void stopListening(Node node);
+}
@@ -6,10 +6,22 @@ import java.util.Map;
 
 public class AddKeyRequest implements Message, Serializable {
     private Map.Entry<Long, Object> keyValue;
+    private boolean ownerOnly;
     private Long lockId;
 
     public AddKeyRequest(Map.Entry<Long, Object> keyValue, Long lockId) {
+        this(keyValue, false, lockId);
+    }
+
+    /**
+     * @param keyValue  the key-value entry to be stored
+     * @param ownerOnly true if the other node must store the key only if it owns it (the sender has found it
+     *                  in its location cache, that can be stale), false if it must store it anyway
+     * @param lockId    lockId of the request
+     */
+    public AddKeyRequest(Map.Entry<Long, Object> keyValue, boolean ownerOnly, Long lockId) {
         this.keyValue = keyValue;
+        this.ownerOnly = ownerOnly;
         this.lockId = lockId;
     }
 
@@ -18,10 +30,25 @@ public class AddKeyRequest implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.CLIENT;
+    }
+
     public Map.Entry<Long, Object> getKeyValue() {
         return keyValue;
     }
 
+    public boolean isOwnerOnly() {
+        return ownerOnly;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
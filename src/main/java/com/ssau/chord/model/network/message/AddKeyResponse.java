@@ -9,10 +9,20 @@ import java.io.Serializable;
 
 public class AddKeyResponse implements Message, Serializable {
     private NodeInterface node;
+    private Long predecessorId;
+    private boolean owner;
     private Long lockId;
 
-    public AddKeyResponse(NodeInterface node, Long lockId) {
+    /**
+     * @param node          the node that has stored the key
+     * @param predecessorId nodeId of its predecessor, null if it is not known
+     * @param owner         true if the node owns the key
+     * @param lockId        lockId of the request
+     */
+    public AddKeyResponse(NodeInterface node, Long predecessorId, boolean owner, Long lockId) {
         this.node = node;
+        this.predecessorId = predecessorId;
+        this.owner = owner;
         this.lockId = lockId;
     }
 
@@ -21,11 +31,30 @@ public class AddKeyResponse implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.CLIENT;
+    }
+
 
     public NodeInterface getNode() {
         return node;
     }
 
+    public Long getPredecessorId() {
+        return predecessorId;
+    }
+
+    public boolean isOwner() {
+        return owner;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
@@ -0,0 +1,35 @@
+package com.ssau.chord.model.network.message;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Sent instead of the response when the other node is saturated and has discarded the request
+ */
+public class BusyResponse implements Message, Serializable {
+    private Long lockId;
+
+    public BusyResponse(Long lockId) {
+        this.lockId = lockId;
+    }
+
+    @Override
+    public void handle(MessageHandler messageHandler) throws IOException {
+        messageHandler.handle(this);
+    }
+
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
+    @Override
+    public Long getLockId() {
+        return lockId;
+    }
+}
@@ -17,6 +17,17 @@ public class FindKeyRequest implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.CLIENT;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
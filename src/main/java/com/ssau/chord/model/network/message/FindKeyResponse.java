@@ -5,10 +5,20 @@ import java.io.Serializable;
 
 public class FindKeyResponse implements Message, Serializable {
     private Object value;
+    private Long predecessorId;
+    private boolean owner;
     private Long lockId;
 
-    public FindKeyResponse(Object value, Long lockId) {
+    /**
+     * @param value         the value of the key, null if it does not exist
+     * @param predecessorId nodeId of the predecessor of the node, null if it is not known
+     * @param owner         true if the node owns the key
+     * @param lockId        lockId of the request
+     */
+    public FindKeyResponse(Object value, Long predecessorId, boolean owner, Long lockId) {
         this.value = value;
+        this.predecessorId = predecessorId;
+        this.owner = owner;
         this.lockId = lockId;
     }
 
@@ -17,6 +27,17 @@ public class FindKeyResponse implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.CLIENT;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
@@ -24,4 +45,12 @@ public class FindKeyResponse implements Message, Serializable {
     public Object getValue() {
         return value;
     }
+
+    public Long getPredecessorId() {
+        return predecessorId;
+    }
+
+    public boolean isOwner() {
+        return owner;
+    }
 }
@@ -5,10 +5,18 @@ import java.io.Serializable;
 
 public class FindSuccessorRequest implements Message, Serializable {
     private long id;
+    private Priority priority;
     private Long lockId;
 
-    public FindSuccessorRequest(Long id, Long lockId) {
+    /**
+     * @param id       NodeId to be found
+     * @param priority CLIENT if the lookup has been started by a key operation or a lookup of the user,
+     *                 MAINTENANCE if it has been started by join or fixFingers
+     * @param lockId   lockId of the request
+     */
+    public FindSuccessorRequest(Long id, Priority priority, Long lockId) {
         this.id = id;
+        this.priority = priority;
         this.lockId = lockId;
     }
 
@@ -17,10 +25,21 @@ public class FindSuccessorRequest implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return priority;
+    }
+
     public long getId() {
         return id;
     }
 
+    @Override
     public Long getLockId() {
         return lockId;
     }
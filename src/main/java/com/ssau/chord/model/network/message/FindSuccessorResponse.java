@@ -9,10 +9,17 @@ import java.io.Serializable;
 
 public class FindSuccessorResponse implements Message, Serializable {
     private NodeInterface node;
+    private Priority priority;
     private Long lockId;
 
-    public FindSuccessorResponse(NodeInterface node, Long lockId) {
+    /**
+     * @param node     the successor of the searched id
+     * @param priority the priority of the lookup
+     * @param lockId   lockId of the lookup
+     */
+    public FindSuccessorResponse(NodeInterface node, Priority priority, Long lockId) {
         this.node = node;
+        this.priority = priority;
         this.lockId = lockId;
     }
 
@@ -21,6 +28,17 @@ public class FindSuccessorResponse implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return priority;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
@@ -21,10 +21,21 @@ public class GetPredecessorResponse implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
     public NodeInterface getNode() {
         return node;
     }
 
+    @Override
     public Long getLockId() {
         return lockId;
     }
@@ -15,6 +15,17 @@ public class GetSuccessorListRequest implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
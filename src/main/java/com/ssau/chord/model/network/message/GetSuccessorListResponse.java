@@ -22,10 +22,21 @@ public class GetSuccessorListResponse implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
     public List<NodeInterface> getSuccessorList() {
         return successorList;
     }
 
+    @Override
     public Long getLockId() {
         return lockId;
     }
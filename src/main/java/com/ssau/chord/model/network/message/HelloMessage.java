@@ -0,0 +1,71 @@
+package com.ssau.chord.model.network.message;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * First message sent by the node that opens a connection: it carries what the accepting node needs to use
+ * the connection immediately (nodeId and listen port of the connecting node), the dimension of its finger
+ * table (0 if it is joining and does not know it yet) and the version of the protocol.
+ * targetNodeId is the nodeId of the node to which the connection is opened (-1 if it is not known): a process
+ * with virtual nodes accepts all their connections on the same port, and uses it to choose the virtual node
+ */
+public class HelloMessage implements Message, Serializable {
+    public static final int PROTOCOL_VERSION = 6;
+
+    private Long lockId;
+    private int version;
+    private Long nodeId;
+    private int socketPort;
+    private int dimFingerTable;
+    private Long targetNodeId;
+
+    public HelloMessage(Long lockId, int version, Long nodeId, int socketPort, int dimFingerTable, Long targetNodeId) {
+        this.lockId = lockId;
+        this.version = version;
+        this.nodeId = nodeId;
+        this.socketPort = socketPort;
+        this.dimFingerTable = dimFingerTable;
+        this.targetNodeId = targetNodeId;
+    }
+
+    @Override
+    public void handle(MessageHandler messageHandler) throws IOException {
+        messageHandler.handle(this);
+    }
+
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
+    @Override
+    public Long getLockId() {
+        return lockId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Long getNodeId() {
+        return nodeId;
+    }
+
+    public int getSocketPort() {
+        return socketPort;
+    }
+
+    public int getDimFingerTable() {
+        return dimFingerTable;
+    }
+
+    public Long getTargetNodeId() {
+        return targetNodeId;
+    }
+}
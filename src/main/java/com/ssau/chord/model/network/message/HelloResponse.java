@@ -0,0 +1,62 @@
+package com.ssau.chord.model.network.message;
+
+import com.ssau.chord.model.node.HashAlgorithm;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Response to the HelloMessage: nodeId of the accepting node, dimension of its finger table and hash function
+ * of the network
+ */
+public class HelloResponse implements Message, Serializable {
+    private Long lockId;
+    private int version;
+    private Long nodeId;
+    private int dimFingerTable;
+    private HashAlgorithm hashAlgorithm;
+
+    public HelloResponse(Long lockId, int version, Long nodeId, int dimFingerTable, HashAlgorithm hashAlgorithm) {
+        this.lockId = lockId;
+        this.version = version;
+        this.nodeId = nodeId;
+        this.dimFingerTable = dimFingerTable;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    @Override
+    public void handle(MessageHandler messageHandler) throws IOException {
+        messageHandler.handle(this);
+    }
+
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
+    @Override
+    public Long getLockId() {
+        return lockId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Long getNodeId() {
+        return nodeId;
+    }
+
+    public int getDimFingerTable() {
+        return dimFingerTable;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+}
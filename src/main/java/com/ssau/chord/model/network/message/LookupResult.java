@@ -0,0 +1,51 @@
+package com.ssau.chord.model.network.message;
+
+import com.ssau.chord.model.node.NodeInterface;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Result of a RouteLookupRequest, sent by the owner of the id directly to the node that started the lookup,
+ * with the lockId of the lookup in its table
+ */
+public class LookupResult implements Message, Serializable {
+    private NodeInterface node;
+    private Priority priority;
+    private Long lockId;
+
+    /**
+     * @param node     the successor of the searched id
+     * @param priority the priority of the lookup
+     * @param lockId   lockId of the lookup
+     */
+    public LookupResult(NodeInterface node, Priority priority, Long lockId) {
+        this.node = node;
+        this.priority = priority;
+        this.lockId = lockId;
+    }
+
+    @Override
+    public void handle(MessageHandler messageHandler) throws IOException {
+        messageHandler.handle(this);
+    }
+
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public Long getLockId() {
+        return lockId;
+    }
+
+    public NodeInterface getNode() {
+        return node;
+    }
+}
@@ -15,4 +15,19 @@ public interface Message extends Serializable {
      * @throws IOException in an I/O error occurs
      */
     void handle(MessageHandler messageHandler) throws IOException;
+
+    /**
+     * @return the lockId that binds a request to its response
+     */
+    Long getLockId();
+
+    /**
+     * @return true if the message is a request that waits for a response, false if it is the response
+     */
+    boolean isRequest();
+
+    /**
+     * @return the priority with which the message is handled and sent
+     */
+    Priority getPriority();
 }
@@ -9,7 +9,7 @@ public interface MessageHandler {
 
     /**
      * Method called by socketNode when the node to which the connection is open is disconnected.
-     * Method calls SocketManager.removeNode(disconnectedNodeId)
+     * Method calls SocketManager.removeNode(disconnectedNodeId, communicator)
      */
     void nodeDisconnected();
 
@@ -56,62 +56,92 @@ public interface MessageHandler {
     void handle(GetPredecessorResponse getPredecessorResponse) throws IOException;
 
     /**
-     * @param getDimFingerTableRequest the received getDimFingerTableRequest message
+     * @param getSuccessorListRequest the received getSuccessorListRequest message
      * @throws IOException in an I/O error occurs
      */
-    void handle(GetDimFingerTableRequest getDimFingerTableRequest) throws IOException;
+    void handle(GetSuccessorListRequest getSuccessorListRequest) throws IOException;
 
     /**
-     * @param getDimFingerTableResponse the received getDimFingerTableResponse message
+     * @param getSuccessorListResponse the received getSuccessorListResponse message
      * @throws IOException in an I/O error occurs
      */
-    void handle(GetDimFingerTableResponse getDimFingerTableResponse) throws IOException;
+    void handle(GetSuccessorListResponse getSuccessorListResponse) throws IOException;
 
     /**
-     * @param getInitialSocketPortRequest the received getInitialSocketPortRequest message
+     * @param addKeyRequest the received addKeyRequest message
      * @throws IOException in an I/O error occurs
      */
-    void handle(GetInitialSocketPortRequest getInitialSocketPortRequest) throws IOException;
+    void handle(AddKeyRequest addKeyRequest) throws IOException;
 
     /**
-     * @param getInitialSocketPortResponse the received getInitialSocketPortResponse message
+     * @param addKeyResponse the received addKeyResponse message
      * @throws IOException in an I/O error occurs
      */
-    void handle(GetInitialSocketPortResponse getInitialSocketPortResponse) throws IOException;
+    void handle(AddKeyResponse addKeyResponse) throws IOException;
 
     /**
-     * @param getSuccessorListRequest the received getSuccessorListRequest message
+     * @param findKeyResponse the received findKeyResponse message
      * @throws IOException in an I/O error occurs
      */
-    void handle(GetSuccessorListRequest getSuccessorListRequest) throws IOException;
+    void handle(FindKeyResponse findKeyResponse) throws IOException;
 
     /**
-     * @param getSuccessorListResponse the received getSuccessorListResponse message
+     * @param findKeyRequest the received findKeyRequest message
      * @throws IOException in an I/O error occurs
      */
-    void handle(GetSuccessorListResponse getSuccessorListResponse) throws IOException;
+    void handle(FindKeyRequest findKeyRequest) throws IOException;
 
     /**
-     * @param addKeyRequest the received addKeyRequest message
+     * @param busyResponse the received busyResponse message
      * @throws IOException in an I/O error occurs
      */
-    void handle(AddKeyRequest addKeyRequest) throws IOException;
+    void handle(BusyResponse busyResponse) throws IOException;
 
     /**
-     * @param addKeyResponse the received addKeyResponse message
+     * @param pingRequest the received pingRequest message
      * @throws IOException in an I/O error occurs
      */
-    void handle(AddKeyResponse addKeyResponse) throws IOException;
+    void handle(PingRequest pingRequest) throws IOException;
 
     /**
-     * @param findKeyResponse the received findKeyResponse message
+     * @param pingResponse the received pingResponse message
      * @throws IOException in an I/O error occurs
      */
-    void handle(FindKeyResponse findKeyResponse) throws IOException;
+    void handle(PingResponse pingResponse) throws IOException;
 
     /**
-     * @param findKeyRequest the received findKeyRequest message
+     * @param helloMessage the received helloMessage message
      * @throws IOException in an I/O error occurs
      */
-    void handle(FindKeyRequest findKeyRequest) throws IOException;
+    void handle(HelloMessage helloMessage) throws IOException;
+
+    /**
+     * @param helloResponse the received helloResponse message
+     * @throws IOException in an I/O error occurs
+     */
+    void handle(HelloResponse helloResponse) throws IOException;
+
+    /**
+     * @param nextHopRequest the received nextHopRequest message
+     * @throws IOException in an I/O error occurs
+     */
+    void handle(NextHopRequest nextHopRequest) throws IOException;
+
+    /**
+     * @param nextHopResponse the received nextHopResponse message
+     * @throws IOException in an I/O error occurs
+     */
+    void handle(NextHopResponse nextHopResponse) throws IOException;
+
+    /**
+     * @param routeLookupRequest the received routeLookupRequest message
+     * @throws IOException in an I/O error occurs
+     */
+    void handle(RouteLookupRequest routeLookupRequest) throws IOException;
+
+    /**
+     * @param lookupResult the received lookupResult message
+     * @throws IOException in an I/O error occurs
+     */
+    void handle(LookupResult lookupResult) throws IOException;
 }
@@ -0,0 +1,48 @@
+package com.ssau.chord.model.network.message;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Step of an iterative lookup: asks to the other node its next hop towards the successor of id
+ */
+public class NextHopRequest implements Message, Serializable {
+    private long id;
+    private Priority priority;
+    private Long lockId;
+
+    /**
+     * @param id       NodeId to be found
+     * @param priority priority of the lookup, the same on every hop
+     * @param lockId   lockId of the request
+     */
+    public NextHopRequest(Long id, Priority priority, Long lockId) {
+        this.id = id;
+        this.priority = priority;
+        this.lockId = lockId;
+    }
+
+    @Override
+    public void handle(MessageHandler messageHandler) throws IOException {
+        messageHandler.handle(this);
+    }
+
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public Long getLockId() {
+        return lockId;
+    }
+}
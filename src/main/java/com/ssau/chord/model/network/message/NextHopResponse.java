@@ -0,0 +1,47 @@
+package com.ssau.chord.model.network.message;
+
+import com.ssau.chord.model.node.NextHop;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+public class NextHopResponse implements Message, Serializable {
+    private NextHop nextHop;
+    private Priority priority;
+    private Long lockId;
+
+    /**
+     * @param nextHop  the successor or the candidates for the next hop
+     * @param priority the priority of the request
+     * @param lockId   lockId of the request
+     */
+    public NextHopResponse(NextHop nextHop, Priority priority, Long lockId) {
+        this.nextHop = nextHop;
+        this.priority = priority;
+        this.lockId = lockId;
+    }
+
+    @Override
+    public void handle(MessageHandler messageHandler) throws IOException {
+        messageHandler.handle(this);
+    }
+
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public Long getLockId() {
+        return lockId;
+    }
+
+    public NextHop getNextHop() {
+        return nextHop;
+    }
+}
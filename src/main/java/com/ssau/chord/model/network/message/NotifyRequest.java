@@ -19,10 +19,21 @@ public class NotifyRequest implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
     public NodeInterface getNode() {
         return node;
     }
 
+    @Override
     public Long getLockId() {
         return lockId;
     }
@@ -3,12 +3,10 @@ package com.ssau.chord.model.network.message;
 import java.io.IOException;
 import java.io.Serializable;
 
-public class GetInitialSocketPortResponse implements Message, Serializable {
-    private int socketPort;
+public class PingRequest implements Message, Serializable {
     private Long lockId;
 
-    public GetInitialSocketPortResponse(int socketPort, Long lockId) {
-        this.socketPort = socketPort;
+    public PingRequest(Long lockId) {
         this.lockId = lockId;
     }
 
@@ -17,10 +15,17 @@ public class GetInitialSocketPortResponse implements Message, Serializable {
         messageHandler.handle(this);
     }
 
-    public int getSocketPort() {
-        return socketPort;
+    @Override
+    public boolean isRequest() {
+        return true;
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
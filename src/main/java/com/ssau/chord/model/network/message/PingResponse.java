@@ -3,10 +3,10 @@ package com.ssau.chord.model.network.message;
 import java.io.IOException;
 import java.io.Serializable;
 
-public class GetDimFingerTableRequest implements Message, Serializable {
+public class PingResponse implements Message, Serializable {
     private Long lockId;
 
-    public GetDimFingerTableRequest(Long lockId) {
+    public PingResponse(Long lockId) {
         this.lockId = lockId;
     }
 
@@ -15,6 +15,17 @@ public class GetDimFingerTableRequest implements Message, Serializable {
         messageHandler.handle(this);
     }
 
+    @Override
+    public boolean isRequest() {
+        return false;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.MAINTENANCE;
+    }
+
+    @Override
     public Long getLockId() {
         return lockId;
     }
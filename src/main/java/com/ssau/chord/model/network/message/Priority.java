@@ -0,0 +1,12 @@
+package com.ssau.chord.model.network.message;
+
+/**
+ * Priority of a message: the maintenance messages (join, stabilization, fix finger, heartbeats) are handled
+ * and written before the client ones (keys), so the ring stays stable when the client traffic is high.
+ * The lookups have the priority of the operation that started them: CLIENT for addKey, findKey and lookup,
+ * MAINTENANCE for join and fixFingers
+ */
+public enum Priority {
+    MAINTENANCE,
+    CLIENT
+}
@@ -0,0 +1,59 @@
+package com.ssau.chord.model.network.message;
+
+import com.ssau.chord.model.node.NodeInterface;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Lookup routed with direct reply: it is forwarded towards the owner of id without waiting, and the owner sends
+ * a LookupResult to origin. The lockId is the id of the lookup in the table of origin, so no response is sent
+ * on this connection. The priority is the one given by origin, kept by every node of the path
+ */
+public class RouteLookupRequest implements Message, Serializable {
+    private long id;
+    private NodeInterface origin;
+    private int hops;
+    private Priority priority;
+    private Long lockId;
+
+    public RouteLookupRequest(Long id, NodeInterface origin, int hops, Priority priority, Long lockId) {
+        this.id = id;
+        this.origin = origin;
+        this.hops = hops;
+        this.priority = priority;
+        this.lockId = lockId;
+    }
+
+    @Override
+    public void handle(MessageHandler messageHandler) throws IOException {
+        messageHandler.handle(this);
+    }
+
+    @Override
+    public boolean isRequest() {
+        return true;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public NodeInterface getOrigin() {
+        return origin;
+    }
+
+    public int getHops() {
+        return hops;
+    }
+
+    @Override
+    public Long getLockId() {
+        return lockId;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ssau.chord.model.node;
+
+
+import com.ssau.chord.model.exceptions.TimerExpiredException;
+import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helper methods shared by the synchronous and asynchronous versions of the NodeInterface methods
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * @param throwable the cause of the failure
+     * @return a future already completed exceptionally with throwable
+     */
+    public static <T> CompletableFuture<T> failed(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * Waits the result of an asynchronous method, throwing the same exceptions of the synchronous version
+     *
+     * @param future future returned by the asynchronous method
+     * @return the result of the future
+     * @throws IOException           if the future failed with an I/O error
+     * @throws TimerExpiredException if the future failed because a timer expired (or the thread was interrupted)
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException, TimerExpiredException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimerExpiredException();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof TimerExpiredException)
+                throw (TimerExpiredException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new UnexpectedBehaviourException();
+        }
+    }
+
+    /**
+     * @param throwable exception received by a completion stage
+     * @return the original cause, without the CompletionException/ExecutionException wrappers
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null)
+            throwable = throwable.getCause();
+        return throwable;
+    }
+}
@@ -3,18 +3,31 @@ package com.ssau.chord.model.node;
 
 import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
 
+import java.nio.charset.StandardCharsets;
+
 public class Hash {
-    private static Hash hashInstance;
+    private static volatile Hash hashInstance;
     private int dimFingerTable;
+    private final Ring ring;
+    private final HashAlgorithm algorithm;
 
-    private Hash(int dimFingerTable) {
+    private Hash(int dimFingerTable, HashAlgorithm algorithm) {
         this.dimFingerTable = dimFingerTable;
+        this.ring = new Ring(dimFingerTable);
+        this.algorithm = algorithm;
     }
 
-    static void initializeHash(int dimFingerTable) {
+    /**
+     * Initializes the hash of the network. Several nodes can run in the same JVM (see LocalTransport),
+     * so it can be called again, but only with the same dimension and algorithm
+     *
+     * @param dimFingerTable dimension of finger table of the network
+     * @param algorithm      hash function of the network
+     */
+    static synchronized void initializeHash(int dimFingerTable, HashAlgorithm algorithm) {
         if (hashInstance == null)
-            hashInstance = new Hash(dimFingerTable);
-        else
+            hashInstance = new Hash(dimFingerTable, algorithm);
+        else if (hashInstance.dimFingerTable != dimFingerTable || hashInstance.algorithm != algorithm)
             throw new UnexpectedBehaviourException();
     }
 
@@ -25,16 +38,80 @@ public class Hash {
     }
 
     /**
-     * Applies the hash function to calculate the nodeId starting from ipAddress and socketPort
+     * @return the identifier space of the network
+     */
+    public Ring getRing() {
+        return ring;
+    }
+
+    /**
+     * @return the hash function of the network
+     */
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Applies the hash function to calculate the nodeId starting from ipAddress and socketPort.
+     * With ENDPOINT the nodeId is the address as number plus the port, otherwise it is the hash of "ipAddress:socketPort"
      *
      * @param ipAddress  ipAddress of node
      * @param socketPort socketPort of node
      * @return the calculated hash correspondent to nodeId
      */
     public Long calculateHash(String ipAddress, int socketPort) {
-        Long ipNumber = ipToLong(ipAddress) + socketPort;
-        Long numberNodes = (long) Math.pow(2, dimFingerTable);
-        return ipNumber % numberNodes;
+        if (algorithm == HashAlgorithm.ENDPOINT)
+            return ring.normalize(ipToLong(ipAddress) + socketPort);
+        byte[] endpoint = (ipAddress + ":" + socketPort).getBytes(StandardCharsets.UTF_8);
+        return ring.normalize(algorithm.hash(endpoint));
+    }
+
+    /**
+     * Calculates the nodeId of a virtual node of the process at ipAddress and socketPort: it is the hash of
+     * "ipAddress:socketPort#index". ENDPOINT does not mix the bytes, so with it the virtual nodeIds are
+     * computed with MIX64; index 0 is the first node, with the nodeId of calculateHash(ipAddress, socketPort)
+     *
+     * @param ipAddress  ipAddress of node
+     * @param socketPort socketPort of node
+     * @param index      index of the virtual node, from 0
+     * @return the calculated hash correspondent to nodeId of the virtual node
+     */
+    public Long calculateHash(String ipAddress, int socketPort, int index) {
+        if (index == 0)
+            return calculateHash(ipAddress, socketPort);
+        byte[] endpoint = (ipAddress + ":" + socketPort + "#" + index).getBytes(StandardCharsets.UTF_8);
+        HashAlgorithm mixing = algorithm == HashAlgorithm.ENDPOINT ? HashAlgorithm.MIX64 : algorithm;
+        return ring.normalize(mixing.hash(endpoint));
+    }
+
+    /**
+     * Applies the hash function to calculate the position of a key in the ring, the key is stored by the node
+     * that succeeds the position. With ENDPOINT the position is the key modulo 2^dimFingerTable (sequential keys
+     * stay on the same node), otherwise the key is mixed and the keys are spread over all the nodes
+     *
+     * @param key the key
+     * @return the position of key in the ring
+     */
+    public long calculateKeyHash(long key) {
+        if (algorithm == HashAlgorithm.ENDPOINT)
+            return ring.normalize(key);
+        return ring.normalize(algorithm.hash(key));
+    }
+
+    /**
+     * @param key the key, as arbitrary bytes
+     * @return the position of key in the ring
+     */
+    public long calculateKeyHash(byte[] key) {
+        return ring.normalize(algorithm.hash(key));
+    }
+
+    /**
+     * @param key the key, as string (hashed in UTF-8)
+     * @return the position of key in the ring
+     */
+    public long calculateKeyHash(String key) {
+        return calculateKeyHash(key.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -49,9 +126,9 @@ public class Hash {
         String[] ipAddressInArray = ipAddress.split("\\.");
         long result = 0;
         for (int i = 0; i < ipAddressInArray.length; i++) {
-            int power = 3 - i;
-            int ip = Integer.parseInt(ipAddressInArray[i]);
-            result += ip * Math.pow(256, power);
+            int shift = 8 * (3 - i);
+            long ip = Integer.parseInt(ipAddressInArray[i]);
+            result += ip << shift;
         }
         return result;
     }
@@ -0,0 +1,113 @@
+package com.ssau.chord.model.node;
+
+
+import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Hash function used to compute the identifiers of the network. It is chosen by the node that creates the network
+ * and sent to the joining nodes in the HelloResponse, so all the nodes compute the identifiers in the same way.
+ * The result is a 64 bit value, reduced to the size of the ring by Hash
+ * <p>
+ * ENDPOINT is the original function (IPv4 address as number plus port): nodes of the same host or subnet get
+ * adjacent identifiers. SHA1 and SHA256 take the first 8 bytes of the digest, MIX64 is a fast non cryptographic
+ * mixer (finalizer of splitmix64): all three spread the identifiers uniformly over the ring
+ */
+public enum HashAlgorithm {
+    /**
+     * the bytes are read as a big endian number (the last 8 bytes if they are more), without mixing
+     */
+    ENDPOINT {
+        @Override
+        public long hash(byte[] bytes) {
+            long result = 0;
+            for (byte value : bytes)
+                result = (result << 8) | (value & 0xff);
+            return result;
+        }
+    },
+    SHA1 {
+        @Override
+        public long hash(byte[] bytes) {
+            return digest("SHA-1", bytes);
+        }
+    },
+    SHA256 {
+        @Override
+        public long hash(byte[] bytes) {
+            return digest("SHA-256", bytes);
+        }
+    },
+    MIX64 {
+        @Override
+        public long hash(byte[] bytes) {
+            long result = mix64(bytes.length);
+            long word = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                word = (word << 8) | (bytes[i] & 0xff);
+                if ((i & 7) == 7 || i == bytes.length - 1) {
+                    result = mix64(result ^ word);
+                    word = 0;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public long hash(long value) {
+            return mix64(value);
+        }
+    };
+
+    /**
+     * @param bytes bytes to hash
+     * @return 64 bit hash of bytes
+     */
+    public abstract long hash(byte[] bytes);
+
+    /**
+     * @param value number to hash
+     * @return 64 bit hash of the 8 bytes (big endian) of value
+     */
+    public long hash(long value) {
+        return hash(ByteBuffer.allocate(Long.BYTES).putLong(value).array());
+    }
+
+    /**
+     * @param name name of the algorithm, case insensitive (endpoint, sha1, sha256, mix64)
+     * @return the algorithm
+     * @throws IllegalArgumentException if there is no algorithm with this name
+     */
+    public static HashAlgorithm parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the algorithm chosen with the system property chord.hash, SHA1 if it is not set or not valid
+     */
+    static HashAlgorithm fromProperty() {
+        String name = System.getProperty("chord.hash", "sha1");
+        for (HashAlgorithm algorithm : values())
+            if (algorithm.name().equalsIgnoreCase(name))
+                return algorithm;
+        return SHA1;
+    }
+
+    private static long digest(String algorithm, byte[] bytes) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance(algorithm).digest(bytes)).getLong();
+        } catch (NoSuchAlgorithmException e) { //every JVM supports SHA-1 and SHA-256
+            throw new UnexpectedBehaviourException();
+        }
+    }
+
+    private static long mix64(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ssau.chord.model.node;
+
+import java.io.Serializable;
+
+/**
+ * Answer of a node to an addKey or findKey sent directly to it: the value (only for findKey), if the node owns
+ * the key, and the nodeId of its predecessor, so the node that sent the request can cache the interval
+ * (predecessorId, nodeId] of the owner (see LocationCache)
+ */
+public final class KeyReply implements Serializable {
+    private final Object value;
+    private final Long predecessorId;
+    private final boolean owner;
+
+    /**
+     * @param value         the value of the key, null for addKey or if it does not exist
+     * @param predecessorId nodeId of the predecessor of the node, null if it is not known
+     * @param owner         true if the key is between the predecessor (excluded) and the node (included)
+     */
+    public KeyReply(Object value, Long predecessorId, boolean owner) {
+        this.value = value;
+        this.predecessorId = predecessorId;
+        this.owner = owner;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public Long getPredecessorId() {
+        return predecessorId;
+    }
+
+    public boolean isOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,125 @@
+package com.ssau.chord.model.node;
+
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the owners of the keys recently added or found by the node: each entry is the interval
+ * (predecessorId, ownerId] of an owner, as told by the owner itself in its KeyReply, so the next operations
+ * on a key of the interval go directly to the owner instead of doing a lookup.
+ * <p>
+ * The entries are sorted by ownerId (unsigned, as the identifiers of the ring), so the interval of a key is the
+ * one of the first owner that follows it. At most chord.cache.size entries are kept, the least recently used is
+ * evicted first, and each entry expires after chord.cache.ttlMillis milliseconds. An entry is removed when its
+ * owner answers that it no longer owns the key, when it is not reachable or when it disconnects
+ */
+final class LocationCache {
+    private static final int CAPACITY = Integer.getInteger("chord.cache.size", 1024);
+    private static final long TTL = TimeUnit.MILLISECONDS.toNanos(Long.getLong("chord.cache.ttlMillis", 10000));
+
+    private final Ring ring;
+    private final int capacity;
+    private final long ttl;
+    /**
+     * entries by ownerId, guarded by this
+     */
+    private final TreeMap<Long, Location> byOwner = new TreeMap<>(Long::compareUnsigned);
+    /**
+     * the same entries in access order, guarded by this
+     */
+    private final LinkedHashMap<Long, Location> byAccess = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param ring identifier space of the network
+     */
+    LocationCache(Ring ring) {
+        this(ring, CAPACITY, TTL);
+    }
+
+    /**
+     * @param ring     identifier space of the network
+     * @param capacity maximum number of entries
+     * @param ttl      lifetime of an entry, in nanoseconds
+     */
+    LocationCache(Ring ring, int capacity, long ttl) {
+        this.ring = ring;
+        this.capacity = capacity;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param hashKey position of a key in the ring
+     * @return the cached owner of hashKey, null if no valid interval contains it
+     */
+    synchronized NodeInterface get(long hashKey) {
+        Map.Entry<Long, Location> entry = byOwner.ceilingEntry(hashKey);
+        if (entry == null)
+            entry = byOwner.firstEntry();
+        if (entry == null)
+            return null;
+        Location location = entry.getValue();
+        if (System.nanoTime() - location.expiration > 0) {
+            remove(location.owner.getNodeId());
+            return null;
+        }
+        if (!ring.betweenRightIncluded(location.predecessorId, hashKey, location.owner.getNodeId()))
+            return null;
+        byAccess.get(location.owner.getNodeId()); //most recently used
+        return location.owner;
+    }
+
+    /**
+     * Caches the interval of owner, removing the cached owners inside it (they are no longer owners)
+     *
+     * @param predecessorId nodeId of the predecessor of owner
+     * @param owner         the node that owns the keys in (predecessorId, owner]
+     */
+    synchronized void put(long predecessorId, NodeInterface owner) {
+        long ownerId = owner.getNodeId();
+        List<Long> contained = new ArrayList<>();
+        for (Long cachedId : byOwner.keySet())
+            if (predecessorId == ownerId || ring.between(predecessorId, cachedId, ownerId))
+                contained.add(cachedId);
+        for (Long cachedId : contained)
+            remove(cachedId);
+        Location location = new Location(predecessorId, owner, System.nanoTime() + ttl);
+        byOwner.put(ownerId, location);
+        byAccess.put(ownerId, location);
+        if (byAccess.size() > capacity) {
+            Iterator<Long> eldest = byAccess.keySet().iterator();
+            Long eldestId = eldest.next();
+            eldest.remove();
+            byOwner.remove(eldestId);
+        }
+    }
+
+    /**
+     * @param ownerId nodeId of an owner that no longer owns its cached interval, or that is not reachable
+     */
+    synchronized void invalidate(Long ownerId) {
+        remove(ownerId);
+    }
+
+    private void remove(Long ownerId) {
+        byOwner.remove(ownerId);
+        byAccess.remove(ownerId);
+    }
+
+    private static final class Location {
+        private final long predecessorId;
+        private final NodeInterface owner;
+        private final long expiration;
+
+        Location(long predecessorId, NodeInterface owner, long expiration) {
+            this.predecessorId = predecessorId;
+            this.owner = owner;
+            this.expiration = expiration;
+        }
+    }
+}
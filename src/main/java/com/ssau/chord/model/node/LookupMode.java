@@ -0,0 +1,32 @@
+package com.ssau.chord.model.node;
+
+/**
+ * How a node resolves a findSuccessor that it can not answer with its successorList:
+ * <ul>
+ * <li>RECURSIVE: the lookup is forwarded to the closest preceding node, that forwards it again,
+ * and the response comes back through every node of the path</li>
+ * <li>ITERATIVE: the node asks to each hop only its next hop (NextHop), and drives the lookup itself.
+ * The intermediate nodes answer immediately, and when a hop does not answer the lookup continues
+ * from the other candidates of the previous hop</li>
+ * <li>DIRECT: the lookup is forwarded as in the recursive mode, but no node of the path waits for it:
+ * the request carries the node that started the lookup, and the owner of the id replies directly to it</li>
+ * </ul>
+ * The mode of the node is read from the system property chord.lookup (recursive, iterative or direct),
+ * or set by Main with the options -it and -dr
+ */
+public enum LookupMode {
+    RECURSIVE,
+    ITERATIVE,
+    DIRECT;
+
+    /**
+     * @return the mode named by the system property chord.lookup, RECURSIVE if it is not set or not valid
+     */
+    static LookupMode fromProperty() {
+        String mode = System.getProperty("chord.lookup", "recursive");
+        for (LookupMode lookupMode : values())
+            if (lookupMode.name().equalsIgnoreCase(mode))
+                return lookupMode;
+        return RECURSIVE;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ssau.chord.model.node;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Answer of a node to a step of an iterative lookup: if done, the first node is the successor of the
+ * searched id, otherwise the nodes are the candidates for the next hop, from the closest preceding
+ * node to the farthest one
+ */
+public final class NextHop implements Serializable {
+    private final boolean done;
+    private final List<NodeInterface> nodes;
+
+    /**
+     * @param done  true if the first node is the successor of the searched id
+     * @param nodes the successor, or the candidates for the next hop
+     */
+    public NextHop(boolean done, List<NodeInterface> nodes) {
+        this.done = done;
+        this.nodes = Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * @param successor successor of the searched id
+     * @return a NextHop that terminates the lookup
+     */
+    static NextHop done(NodeInterface successor) {
+        return new NextHop(true, Collections.singletonList(successor));
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public List<NodeInterface> getNodes() {
+        return nodes;
+    }
+}
@@ -9,36 +9,75 @@ import com.ssau.chord.model.exceptions.NodeIdAlreadyExistsException;
 import com.ssau.chord.model.exceptions.TimerExpiredException;
 import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
 import com.ssau.chord.model.network.NodeCommunicator;
+import com.ssau.chord.model.network.NodeThreads;
 import com.ssau.chord.model.network.SocketManager;
-import com.ssau.chord.model.network.SocketNodeListener;
+import com.ssau.chord.model.network.message.Priority;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import static java.lang.System.*;
 
 public class Node implements NodeInterface, Serializable {
     private static final long serialVersionUID = 1L;
+    /**
+     * maximum number of hops of an iterative lookup, after which it fails as if the timer had expired
+     */
+    private static final int MAX_LOOKUP_HOPS = Integer.getInteger("chord.lookup.maxHops", 64);
+    /**
+     * maximum number of candidates returned by nextHop
+     */
+    private static final int NEXT_HOP_CANDIDATES = Integer.getInteger("chord.lookup.candidates", 4);
+    /**
+     * true to choose the fingers by round trip time among the nodes of their interval (proximity neighbor selection).
+     * Off by default: every refresh of a finger costs a getSuccessorList and the probes of its candidates
+     */
+    private static final boolean PROXIMITY_FINGERS = Boolean.getBoolean("chord.fingers.proximity");
+    /**
+     * maximum number of candidates probed for a finger, the successor of its start included
+     */
+    private static final int PROXIMITY_CANDIDATES = Integer.getInteger("chord.fingers.proximityCandidates", 3);
+    /**
+     * a finger is replaced by a closer candidate only if its round trip time is below this fraction,
+     * so the noise of the measures does not change the finger at every refresh
+     */
+    private static final double PROXIMITY_MARGIN = 0.75;
 
     private String ipAddress;
     private int socketPort;
     private Long nodeId;
 
-    private transient volatile CopyOnWriteArrayList<NodeInterface> successorList;
-    private transient volatile NodeInterface predecessor;
-    private transient volatile Map<Integer, NodeInterface> fingerTable;
+    /**
+     * successorList, predecessor and fingerTable, read without locks: the updates publish a new snapshot
+     * while holding updateLock, which is never held during a remote call
+     */
+    private transient AtomicReference<RoutingState> routing;
+    private transient Object updateLock;
     private transient int dimFingerTable;
+    private transient Ring ring;
     private transient int dimSuccessorList = 3;
     private transient int nextFinger;
     private transient volatile ConcurrentHashMap<Long, Object> keyStore;
+    private transient volatile LocationCache locationCache;
+    /**
+     * lookups sent to the other nodes and not yet completed, by searched id
+     */
+    private transient volatile ConcurrentHashMap<Long, CompletableFuture<NodeInterface>> pendingLookups;
     private transient volatile SocketManager socketManager;
+    private transient volatile UpdateNode updateNode;
+
+    private transient volatile LookupMode lookupMode = LookupMode.fromProperty();
 
     private transient volatile boolean stable = true;
     private transient volatile String ipController;
@@ -46,34 +85,21 @@ public class Node implements NodeInterface, Serializable {
     private transient volatile ControllerInterface controller;
 
     /**
-     * General constructor that initializes all the Node's attributes
+     * General constructor that initializes all the Node's attributes; a node created with it has no controller
      *
      * @param ipAddress  ipAddress of node
      * @param socketPort socketPort on which the node will get incoming connections
      */
     public Node(String ipAddress, int socketPort) {
         this.ipAddress = ipAddress;
-        this.predecessor = null;
-        this.fingerTable = new HashMap<>();
         this.socketPort = socketPort;
         this.nextFinger = 0;
         this.nodeId = -1L;
+        this.routing = new AtomicReference<>(RoutingState.empty(this));
+        this.updateLock = new Object();
         this.socketManager = null;
         this.keyStore = new ConcurrentHashMap();
-    }
-
-    /**
-     * Constructor used only in NodeCommunicator, when we send a Node through socket,
-     * it takes also dimFingerTable as input in order to calculate the correspondent nodeId
-     *
-     * @param ipAddress      ipAddress of Node
-     * @param socketPort     socketPort of Node
-     * @param dimFingerTable dimension of finger table of the network
-     */
-    public Node(String ipAddress, int socketPort, int dimFingerTable) {
-        this(ipAddress, socketPort);
-        this.dimFingerTable = dimFingerTable;
-        this.nodeId = Hash.getHash().calculateHash(ipAddress, socketPort);
+        this.pendingLookups = new ConcurrentHashMap<>();
     }
 
     /**
@@ -104,17 +130,31 @@ public class Node implements NodeInterface, Serializable {
      * @throws IOException              if an I/O error occurs
      */
     public void create(int dimFingerTable) throws ConnectionErrorException, IOException {
+        create(dimFingerTable, HashAlgorithm.fromProperty());
+    }
+
+    /**
+     * Creates the network with the hash function algorithm (instead of the one of the system property chord.hash), that is sent to the nodes that join it
+     *
+     * @param dimFingerTable is the power of two that will represent the dimension of the chord network
+     * @param algorithm      hash function used to compute the nodeIds
+     * @throws ConnectionErrorException if the controller is not available
+     * @throws IOException              if an I/O error occurs
+     */
+    public void create(int dimFingerTable, HashAlgorithm algorithm) throws ConnectionErrorException, IOException {
         this.dimFingerTable = dimFingerTable;
-        Hash.initializeHash(dimFingerTable);
+        Hash.initializeHash(dimFingerTable, algorithm);
+        ring = Hash.getHash().getRing();
+        locationCache = new LocationCache(ring);
         nodeId = Hash.getHash().calculateHash(ipAddress, socketPort);
         out.println("ID: " + nodeId);
-        createSuccessorList();
+        routing.set(RoutingState.initial(this, ring));
+        socketManager = new SocketManager(this); //before the listener: the accepted connections are added to it
         startSocketListener(socketPort);
-        createFingerTable();
-        socketManager = new SocketManager(this);
-        controller = new SocketNodeController(ipController, portController).openController(this);
+        controller = openController();
         controller.connected();
-        Executors.newCachedThreadPool().submit(new UpdateNode(this));
+        updateNode = new UpdateNode(this);
+        NodeThreads.start(updateNode, "chord-update");
     }
 
     /**
@@ -134,20 +174,23 @@ public class Node implements NodeInterface, Serializable {
      */
     public void join(String joinIpAddress, int joinSocketPort)
             throws ConnectionErrorException, NodeIdAlreadyExistsException, IOException {
-        startSocketListener(socketPort);
         NodeCommunicator nodeTemp = new NodeCommunicator(joinIpAddress, joinSocketPort,
                 this, -1); //creates a temporary NodeCommunicator
+        HashAlgorithm algorithm;
         try {
             dimFingerTable = nodeTemp.getInitialDimFingerTable();
+            algorithm = nodeTemp.getInitialHashAlgorithm();
         } catch (TimerExpiredException e) {
             throw new ConnectionErrorException();
         }
-        createFingerTable();
-        Hash.initializeHash(dimFingerTable);
+        Hash.initializeHash(dimFingerTable, algorithm);
+        ring = Hash.getHash().getRing();
+        locationCache = new LocationCache(ring);
         this.nodeId = Hash.getHash().calculateHash(ipAddress, socketPort);
         out.println("ID: " + nodeId);
-        createSuccessorList();
+        routing.set(RoutingState.initial(this, ring));
         this.socketManager = new SocketManager(this);
+        startSocketListener(socketPort); //before the lookup: with direct-reply routing the result comes on a new connection
         NodeInterface successorNode;
         try {
             successorNode = nodeTemp.findSuccessor(this.nodeId);
@@ -157,58 +200,114 @@ public class Node implements NodeInterface, Serializable {
         if (successorNode.getNodeId().equals(nodeId)) //se find successor ritorna un nodo con lo stesso tuo id significa che esiste già un nodo con il tuo id
             throw new NodeIdAlreadyExistsException();
         nodeTemp.close();
-        controller = new SocketNodeController(ipController, portController).openController(this);
+        controller = openController();
         controller.connected();
 
-        successorList.set(0, socketManager.createConnection(successorNode)); //creates a new connection
+        NodeInterface successor = socketManager.createConnection(successorNode); //creates a new connection
+        synchronized (updateLock) {
+            routing.set(routing.get().withSuccessor(successor));
+        }
         try {
             initializeSuccessorList();
-            successorList.get(0).notify(this); //serve per settare il predecessore nel successore del nodo
+            successor.notify(this); //serve per settare il predecessore nel successore del nodo
         } catch (TimerExpiredException e) {
             throw new ConnectionErrorException();
         }
 
-        Executors.newCachedThreadPool().submit(new UpdateNode(this));
+        updateNode = new UpdateNode(this);
+        NodeThreads.start(updateNode, "chord-update");
     }
 
     /**
-     * Initializes fingerTable with this in all positions
+     * Adds the virtual nodes of the process, so it takes count positions of the ring instead of one.
+     * The virtual nodes share the SocketManager (connections and listening port), the transport and the keyStore
+     * of this node, each one has its own nodeId, routing state and UpdateNode. They join the network through
+     * this node, that must have already created or joined it. A virtual nodeId already present is skipped
+     *
+     * @param count number of positions of the process, this node included
+     * @throws ConnectionErrorException if the successor of a virtual node is not reachable
      */
-    private void createFingerTable() {
-        for (int i = 0; i < dimFingerTable; i++)
-            fingerTable.put(i, this);
+    public void addVirtualNodes(int count) throws ConnectionErrorException {
+        for (int index = 1; index < count; index++) {
+            try {
+                new Node(ipAddress, socketPort).joinVirtual(this, index);
+            } catch (NodeIdAlreadyExistsException e) {
+                err.println("Virtual node " + index + ": NodeId already exists, skipped");
+            }
+        }
     }
 
     /**
-     * Creates successorList with this in the first position
+     * Join of a virtual node: the same steps of join, with the dimension, the lookup mode, the keyStore and
+     * the SocketManager of the first node of the process, and without the controller
+     *
+     * @param first the first node of the process
+     * @param index index of the virtual node, from 1
+     * @throws ConnectionErrorException     if the successor is not reachable
+     * @throws NodeIdAlreadyExistsException if the computed NodeId is already present in the network
      */
-    private void createSuccessorList() {
-        successorList = new CopyOnWriteArrayList<>();
-        successorList.add(0, this);
+    private void joinVirtual(Node first, int index) throws ConnectionErrorException, NodeIdAlreadyExistsException {
+        dimFingerTable = first.dimFingerTable;
+        ring = first.ring;
+        locationCache = new LocationCache(ring);
+        lookupMode = first.lookupMode;
+        keyStore = first.keyStore;
+        controller = new DisconnectedController();
+        nodeId = Hash.getHash().calculateHash(ipAddress, socketPort, index);
+        out.println("ID: " + nodeId);
+        routing.set(RoutingState.initial(this, ring));
+        socketManager = first.socketManager;
+        NodeInterface successorNode;
+        try {
+            successorNode = first.findSuccessor(nodeId);
+        } catch (IOException | TimerExpiredException e) {
+            throw new ConnectionErrorException();
+        }
+        if (successorNode.getNodeId().equals(nodeId))
+            throw new NodeIdAlreadyExistsException();
+        socketManager.addLocalNode(this);
+
+        NodeInterface successor = socketManager.createConnection(successorNode);
+        synchronized (updateLock) {
+            routing.set(routing.get().withSuccessor(successor));
+        }
+        try {
+            initializeSuccessorList();
+            successor.notify(this);
+        } catch (IOException | TimerExpiredException e) {
+            throw new ConnectionErrorException();
+        }
+
+        updateNode = new UpdateNode(this);
+        NodeThreads.start(updateNode, "chord-update");
     }
 
     /**
-     * Asks to the successor its successorList, and constructs its own successorList from that
+     * Asks to the successor its successorList, and constructs its own successorList from that.
+     * The connections are opened before taking updateLock, the list is published only if the successorList
+     * has not been changed in the meantime (otherwise listStabilize completes it)
      *
      * @throws TimerExpiredException if getSuccessorList message do not has a response from the successor within a timer
      */
     private void initializeSuccessorList() throws TimerExpiredException {
-        List<NodeInterface> successorNodeList = successorList.get(0).getSuccessorList();
+        RoutingState snapshot = routing.get();
+        List<NodeInterface> successorNodeList = snapshot.getSuccessor().getSuccessorList();
+        List<NodeInterface> successorList = new ArrayList<>(snapshot.getSuccessorList());
+        List<NodeInterface> acquired = new ArrayList<>();
         for (NodeInterface node : successorNodeList) {
             if (node.getNodeId().equals(successorList.get(0).getNodeId()) || node.getNodeId().equals(this.nodeId))
                 break;
-            if (successorList.size() < dimSuccessorList) {
-                try {
-                    successorList.add(socketManager.createConnection(node));
-                } catch (ConnectionErrorException e) {
-                    throw new UnexpectedBehaviourException();
-                }
-            }
+            if (successorList.size() < dimSuccessorList)
+                successorList.add(acquireConnection(node, acquired));
         }
+        publishSuccessorList(snapshot, successorList, Collections.emptyList(), acquired);
     }
 
     /**
      * The method, analyzing various cases, keep updated the successorList.
+     * The remote calls and the connections are done without holding updateLock: holding it, the node only checks
+     * that the state used to build the new successor or successorList has not been changed in the meantime,
+     * and publishes it. If it has been changed, the new connections are released and the next round retries
      *
      * @throws IOException           if an I/O error occurs
      * @throws TimerExpiredException if a timer expires
@@ -216,88 +315,131 @@ public class Node implements NodeInterface, Serializable {
     void listStabilize() throws IOException, TimerExpiredException {
         // The method first of all asks to the successor its own predecessor. If is it null, a notify starts on the
         // successor and the methods finish.
+        NodeInterface successor = routing.get().getSuccessor();
         NodeInterface x;
-        x = successorList.get(0).getPredecessor();
+        x = successor.getPredecessor();
         if (x == null) {
-            successorList.get(0).notify(this);
+            successor.notify(this);
             return;
         }
         /** Если предшественник, заданный в форме преемника, находится между текущим узлом и его преемником
         он установит его в качестве своего первого преемника и уведомит об этом.
          */
         long nodeIndex = x.getNodeId();
-        long oldSucID = successorList.get(0).getNodeId();
-        if (checkInterval(getNodeId(), nodeIndex, oldSucID)) {
-            try {
-                socketManager.closeCommunicator(oldSucID);
-                successorList.set(0, socketManager.createConnection(x));
-            } catch (ConnectionErrorException e) {
-                throw new UnexpectedBehaviourException();
+        if (checkInterval(getNodeId(), nodeIndex, successor.getNodeId())) {
+            NodeInterface connection = acquireConnection(x, new ArrayList<>());
+            NodeInterface newSuccessor = null;
+            NodeInterface oldSuccessor;
+            synchronized (updateLock) {
+                RoutingState state = routing.get();
+                oldSuccessor = state.getSuccessor();
+                if (checkInterval(getNodeId(), nodeIndex, oldSuccessor.getNodeId())) {
+                    routing.set(state.withSuccessor(connection));
+                    newSuccessor = connection;
+                }
             }
-            successorList.get(0).notify(this);
+            socketManager.closeCommunicator(newSuccessor != null ? oldSuccessor : connection);
+            if (newSuccessor != null)
+                newSuccessor.notify(this);
         }
 
         // Now the node has to update its successor list. In order to do that it contacts its successor and
         // asks its successor list.
 
-        boolean already = false;
-
         List<NodeInterface> xList; //xList contiene la lista dei successori del successore
-        xList = successorList.get(0).getSuccessorList();
+        RoutingState snapshot = routing.get();
+        xList = snapshot.getSuccessor().getSuccessorList();
+        List<NodeInterface> successorList = new ArrayList<>(snapshot.getSuccessorList());
+        List<NodeInterface> acquired = new ArrayList<>();
+        List<NodeInterface> replaced = new ArrayList<>();
         if (successorList.size() < dimSuccessorList) { //Add new node to successor list
             for (NodeInterface xNode : xList) {
-                if (!xNode.getNodeId().equals(nodeId) && successorList.size() < dimSuccessorList) {
-                    try {
-                        for (NodeInterface internalNode : successorList) {
-                            if (internalNode.getNodeId().equals(xNode.getNodeId())) {
-                                already = true;
-                                break;
-                            }
-                        }
-                        if (!already)
-                            successorList.add(socketManager.createConnection(xNode));
-                        already = false;
-                    } catch (ConnectionErrorException e) {
-                        throw new UnexpectedBehaviourException();
-                    }
-                } else {
+                if (xNode.getNodeId().equals(nodeId) || successorList.size() >= dimSuccessorList)
                     break;
-                }
+                if (!containsNode(successorList, successorList.size(), xNode.getNodeId()))
+                    successorList.add(acquireConnection(xNode, acquired));
             }
         } else { //only replace existing connection node in the successor list.
-            int i;
-            already = false;
-            for (i = 1; i < dimSuccessorList && i < xList.size(); i++) {
-                if (!successorList.get(i).getNodeId().equals(xList.get(i - 1).getNodeId())
-                        && !xList.get(i - 1).getNodeId().equals(nodeId)) {
-                    try {
-                        for (int index = 0; index < i; index++) {
-                            if (successorList.get(index).getNodeId().equals(xList.get(i - 1).getNodeId())) {
-                                already = true;
-                                break;
-                            }
-                            if (!already) {
-                                socketManager.closeCommunicator(successorList.get(i).getNodeId());
-                                successorList.set(i, socketManager.createConnection(xList.get(i - 1)));
-                            }
-                            already = false;
-                        }
-                    } catch (ConnectionErrorException e) {
-                        throw new UnexpectedBehaviourException();
-                    }
+            for (int i = 1; i < dimSuccessorList && i < xList.size(); i++) {
+                NodeInterface xNode = xList.get(i - 1);
+                if (!successorList.get(i).getNodeId().equals(xNode.getNodeId()) && !xNode.getNodeId().equals(nodeId)
+                        && !containsNode(successorList, i, xNode.getNodeId())) {
+                    replaced.add(successorList.get(i));
+                    successorList.set(i, acquireConnection(xNode, acquired));
                 }
             }
         }
-        CopyOnWriteArrayList<NodeInterface> deleteList = (CopyOnWriteArrayList<NodeInterface>) successorList.clone();
+        List<NodeInterface> deleteList = new ArrayList<>(successorList);
         for (int z = 1; z < successorList.size(); z++) {
             if (successorList.get(z).equals(successorList.get(z - 1)))
                 deleteList.remove(successorList.get(z));
         }
-        successorList = deleteList;
+        publishSuccessorList(snapshot, deleteList, replaced, acquired);
+    }
+
+    /**
+     * @param nodes  list of nodes
+     * @param size   number of nodes of the list to check, from the first one
+     * @param nodeId nodeId to search
+     * @return true if one of the first size nodes has nodeId
+     */
+    private static boolean containsNode(List<NodeInterface> nodes, int size, Long nodeId) {
+        for (int index = 0; index < size; index++)
+            if (nodes.get(index).getNodeId().equals(nodeId))
+                return true;
+        return false;
+    }
+
+    /**
+     * Opens (or takes from the pool) the connection towards node, without holding updateLock
+     *
+     * @param node     node to connect to
+     * @param acquired connections already acquired for the same update, the new one is added to it;
+     *                 they are all released if node is not reachable
+     * @return the connection
+     */
+    private NodeInterface acquireConnection(NodeInterface node, List<NodeInterface> acquired) {
+        try {
+            NodeInterface connection = socketManager.createConnection(node);
+            acquired.add(connection);
+            return connection;
+        } catch (ConnectionErrorException e) {
+            releaseConnections(acquired);
+            throw new UnexpectedBehaviourException();
+        }
+    }
+
+    private void releaseConnections(List<NodeInterface> connections) {
+        for (NodeInterface connection : connections)
+            socketManager.closeCommunicator(connection);
+    }
+
+    /**
+     * Publishes the successorList built from snapshot, holding updateLock, if the successorList of the node
+     * is still the one of snapshot. If it is published the connections of the replaced nodes are released,
+     * otherwise the ones acquired to build it
+     *
+     * @param snapshot      routing state from which successorList has been built
+     * @param successorList the new successorList
+     * @param replaced      connections replaced by the new successorList
+     * @param acquired      connections acquired for the new successorList
+     */
+    private void publishSuccessorList(RoutingState snapshot, List<NodeInterface> successorList, List<NodeInterface> replaced,
+                                      List<NodeInterface> acquired) {
+        boolean published;
+        synchronized (updateLock) {
+            RoutingState state = routing.get();
+            published = state.getSuccessorList() == snapshot.getSuccessorList();
+            if (published)
+                routing.set(state.withSuccessorList(successorList));
+        }
+        releaseConnections(published ? replaced : acquired);
     }
 
     /**
      * {@inheritDoc}
+     * Waits the result of findSuccessorAsync with the MAINTENANCE priority, without holding the lock of the node
+     * during the remote hop
      *
      * @param id NodeId to be found
      * @return
@@ -305,31 +447,220 @@ public class Node implements NodeInterface, Serializable {
      * @throws TimerExpiredException
      */
     @Override
-    public synchronized NodeInterface findSuccessor(Long id) throws IOException, TimerExpiredException {
-        NodeInterface nextNode;
-        for (NodeInterface nodeInterface : successorList) {
+    public NodeInterface findSuccessor(Long id) throws IOException, TimerExpiredException {
+        return Futures.await(findSuccessorAsync(id, Priority.MAINTENANCE));
+    }
+
+    /**
+     * Same as findSuccessor, with the lookup mode chosen for this call instead of the one of the node
+     *
+     * @param id   NodeId to be found
+     * @param mode how the lookup is resolved if it needs other nodes
+     * @return The found Node object
+     * @throws IOException           if an I/O error occurs
+     * @throws TimerExpiredException if timer expires
+     */
+    public NodeInterface findSuccessor(Long id, LookupMode mode) throws IOException, TimerExpiredException {
+        return Futures.await(findSuccessorAsync(id, mode, Priority.MAINTENANCE));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The lookup is resolved with the lookup mode of the node
+     *
+     * @param id       NodeId to be found
+     * @param priority {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<NodeInterface> findSuccessorAsync(Long id, Priority priority) {
+        return findSuccessorAsync(id, lookupMode, priority);
+    }
+
+    /**
+     * Asynchronous version of findSuccessor(id, mode).
+     * The remote hops are not waited: the returned future is completed when the lookup ends.
+     * Concurrent lookups of the same id share the same remote lookup (the first one is sent, the others wait
+     * its result in pendingLookups), whatever their mode and priority
+     *
+     * @param id       NodeId to be found
+     * @param mode     how the lookup is resolved if it needs other nodes
+     * @param priority priority of the requests sent to the other nodes, forwarded on every hop
+     * @return future completed with the found Node object, or exceptionally with a TimerExpiredException
+     */
+    public CompletableFuture<NodeInterface> findSuccessorAsync(Long id, LookupMode mode, Priority priority) {
+        RoutingState state = routing.get();
+        for (NodeInterface nodeInterface : state.getSuccessorList()) {
             if (checkIntervalEquivalence(nodeId, id, nodeInterface.getNodeId()))
-                return nodeInterface;
+                return CompletableFuture.completedFuture(nodeInterface);
         }
-        nextNode = closestPrecedingNodeList(id);
+        NodeInterface nextNode = closestPrecedingNodeList(state, id);
         if (this == nextNode)
-            return this;
-        NodeInterface returnNode = nextNode.findSuccessor(id);
-        if (returnNode == null)
-            throw new TimerExpiredException();
-        return returnNode;
+            return CompletableFuture.completedFuture(this);
+        CompletableFuture<NodeInterface> lookup = pendingLookups.get(id);
+        if (lookup != null)
+            return lookup;
+        CompletableFuture<NodeInterface> createdLookup = new CompletableFuture<>();
+        lookup = pendingLookups.putIfAbsent(id, createdLookup);
+        if (lookup != null)
+            return lookup;
+        CompletableFuture<NodeInterface> remoteLookup;
+        if (mode == LookupMode.ITERATIVE) {
+            remoteLookup = new CompletableFuture<>();
+            iterativeStep(id, nodeId, nextHopCandidates(state, id, nextNode), 0, 0, priority, remoteLookup);
+        } else if (mode == LookupMode.DIRECT)
+            remoteLookup = socketManager.routeLookup(id, nextNode, priority);
+        else
+            remoteLookup = nextNode.findSuccessorAsync(id, priority);
+        remoteLookup.whenComplete((returnNode, throwable) -> {
+            pendingLookups.remove(id, createdLookup);
+            if (throwable != null)
+                createdLookup.completeExceptionally(Futures.unwrap(throwable));
+            else if (returnNode == null)
+                createdLookup.completeExceptionally(new TimerExpiredException());
+            else
+                createdLookup.complete(returnNode);
+        });
+        return createdLookup;
     }
 
     /**
-     * Find the closest preceding node starting to search in the successor list and then in the finger table.
+     * {@inheritDoc}
+     * Answered with the local state only, without any remote call
+     *
+     * @param id       NodeId to be found
+     * @param priority {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<NextHop> nextHopAsync(Long id, Priority priority) {
+        return CompletableFuture.completedFuture(nextHop(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * If the closest preceding node can not be reached, the lookup is forwarded to the next candidate
      *
-     * @param id find the closest preceding node of that id
+     * @param id       NodeId to be found
+     * @param origin   the node that started the lookup, to which the successor is sent
+     * @param lookupId id of the lookup in the table of origin
+     * @param hops     number of nodes that have forwarded the lookup
+     * @param priority {@inheritDoc}
+     */
+    @Override
+    public void routeLookup(Long id, NodeInterface origin, Long lookupId, int hops, Priority priority) {
+        NextHop nextHop = nextHop(id);
+        if (nextHop.isDone()) {
+            socketManager.replyLookup(origin, lookupId, nextHop.getNodes().get(0), priority);
+            return;
+        }
+        if (hops >= MAX_LOOKUP_HOPS)
+            return; //origin fails the lookup when its timer expires
+        for (NodeInterface candidate : nextHop.getNodes()) {
+            try {
+                candidate.routeLookup(id, origin, lookupId, hops + 1, priority);
+                return;
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * @param id NodeId to be found
+     * @return the successor of id if it is in the successorList (or this if no node precedes id),
+     * otherwise the candidates for the next hop
+     */
+    private NextHop nextHop(long id) {
+        RoutingState state = routing.get();
+        for (NodeInterface nodeInterface : state.getSuccessorList()) {
+            if (checkIntervalEquivalence(nodeId, id, nodeInterface.getNodeId()))
+                return NextHop.done(nodeInterface);
+        }
+        NodeInterface nextNode = closestPrecedingNodeList(state, id);
+        if (this == nextNode)
+            return NextHop.done(this);
+        return new NextHop(false, nextHopCandidates(state, id, nextNode));
+    }
+
+    /**
+     * One hop of an iterative lookup: asks the next hop to the first candidate that is between previousId and id.
+     * If the candidate does not answer, the lookup continues from the next candidate; if it answers with
+     * other candidates, the lookup continues from them
+     *
+     * @param id         NodeId to be found
+     * @param previousId nodeId of the node that has given the candidates
+     * @param candidates candidates for the next hop, from the closest preceding node of id
+     * @param index      index of the first candidate not yet tried
+     * @param hops       number of hops already done
+     * @param priority   priority of the NextHopRequests
+     * @param result     future completed with the successor of id
+     */
+    private void iterativeStep(long id, long previousId, List<NodeInterface> candidates, int index, int hops,
+                               Priority priority, CompletableFuture<NodeInterface> result) {
+        //a candidate that is not closer to id than the node that gave it could make the lookup loop
+        while (index < candidates.size() && !checkIntervalClosest(previousId, candidates.get(index).getNodeId(), id))
+            index++;
+        if (index == candidates.size() || hops >= MAX_LOOKUP_HOPS) {
+            result.completeExceptionally(new TimerExpiredException());
+            return;
+        }
+        NodeInterface candidate = candidates.get(index);
+        int nextIndex = index + 1;
+        NodeInterface hop;
+        try {
+            hop = socketManager.createConnection(candidate);
+        } catch (ConnectionErrorException e) {
+            iterativeStep(id, previousId, candidates, nextIndex, hops + 1, priority, result);
+            return;
+        }
+        hop.nextHopAsync(id, priority).whenComplete((nextHop, throwable) -> {
+            socketManager.closeCommunicator(hop);
+            if (throwable != null || nextHop.getNodes().isEmpty())
+                iterativeStep(id, previousId, candidates, nextIndex, hops + 1, priority, result);
+            else if (nextHop.isDone())
+                result.complete(nextHop.getNodes().get(0));
+            else
+                iterativeStep(id, candidate.getNodeId(), nextHop.getNodes(), 0, hops + 1, priority, result);
+        });
+    }
+
+    /**
+     * @param state    snapshot of the routing state
+     * @param id       NodeId to be found
+     * @param nextNode the closest preceding node of id
+     * @return nextNode, followed by the other nodes of successorList and fingerTable that precede id,
+     * from the closest to id (at most NEXT_HOP_CANDIDATES nodes)
+     */
+    private List<NodeInterface> nextHopCandidates(RoutingState state, long id, NodeInterface nextNode) {
+        Map<Long, NodeInterface> preceding = new HashMap<>();
+        for (NodeInterface nodeInterface : state.getSuccessorList())
+            if (checkIntervalClosest(nodeId, nodeInterface.getNodeId(), id))
+                preceding.putIfAbsent(nodeInterface.getNodeId(), nodeInterface);
+        for (NodeInterface finger : state.getFingerTable()) {
+            if (checkIntervalClosest(nodeId, finger.getNodeId(), id))
+                preceding.putIfAbsent(finger.getNodeId(), finger);
+        }
+        preceding.remove(nextNode.getNodeId());
+        List<NodeInterface> candidates = new ArrayList<>(preceding.values());
+        candidates.sort((first, second) -> Long.compareUnsigned(ring.distance(first.getNodeId(), id),
+                ring.distance(second.getNodeId(), id)));
+        candidates.add(0, nextNode);
+        return new ArrayList<>(candidates.subList(0, Math.min(candidates.size(), NEXT_HOP_CANDIDATES)));
+    }
+
+    /**
+     * Find the closest preceding node starting to search in the successor list and then in the finger table
+     * (with the binary search of RoutingState.closestPrecedingFinger).
+     *
+     * @param state snapshot of the routing state
+     * @param id    find the closest preceding node of that id
      * @return The found node
      */
-    private synchronized NodeInterface closestPrecedingNodeList(long id) {
+    private NodeInterface closestPrecedingNodeList(RoutingState state, long id) {
         long nodeIndex;
         long maxClosestId = this.nodeId;
         NodeInterface maxClosestNode = this;
+        List<NodeInterface> successorList = state.getSuccessorList();
 
         //Check the node in the successor list starting from the last one. Save in maxClosestId
         // the temporary correct node.
@@ -343,45 +674,53 @@ public class Node implements NodeInterface, Serializable {
         }
 
         //After do the same thing as before with the finger table.
-        for (int i = dimFingerTable - 1; i >= 0; i--) {
-            nodeIndex = fingerTable.get(i).getNodeId();
-            if (checkIntervalClosest(nodeIndex, id, this.nodeId))
-                if (checkIntervalClosest(maxClosestId, nodeIndex, id))
-                    return fingerTable.get(i);
-                else
-                    break;
-        }
+        NodeInterface finger = state.closestPrecedingFinger(id);
+        if (finger != null && checkIntervalClosest(maxClosestId, finger.getNodeId(), id))
+            return finger;
         return maxClosestNode;
     }
 
     /**
      * {@inheritDoc}
+     * The connection towards the new predecessor is opened without holding updateLock; holding it, the node checks
+     * again that node is a better predecessor than the current one and publishes it. The keys are moved to it after
      *
      * @param node the node itself
      * @throws IOException
      */
     @Override
-    public synchronized void notify(NodeInterface node) throws IOException {
-        if (predecessor == null) {
-            try {
-                predecessor = socketManager.createConnection(node); //creo connessione
-                moveKey();
-            } catch (ConnectionErrorException e) {
-                throw new UnexpectedBehaviourException();
-            }
-        } else {
-            long index = node.getNodeId();
-            long predIndex = predecessor.getNodeId();
-            if (checkInterval(predIndex, index, getNodeId()) && !(predecessor.getNodeId().equals(node.getNodeId()))) { //entro solo se n è diverso dal predecessore
-                try {
-                    socketManager.closeCommunicator(predecessor.getNodeId());//chiudo connessione verso vecchio predecessore
-                    predecessor = socketManager.createConnection(node); //apro connessione verso nuovo predecessore
-                    moveKey();
-                } catch (ConnectionErrorException e) {
-                    throw new UnexpectedBehaviourException();
-                }
-            }
+    public void notify(NodeInterface node) throws IOException {
+        if (!isBetterPredecessor(routing.get().getPredecessor(), node))
+            return;
+        NodeInterface newPredecessor = acquireConnection(node, new ArrayList<>()); //creo connessione
+        NodeInterface oldPredecessor;
+        boolean published;
+        synchronized (updateLock) {
+            RoutingState state = routing.get();
+            oldPredecessor = state.getPredecessor();
+            published = isBetterPredecessor(oldPredecessor, node);
+            if (published)
+                routing.set(state.withPredecessor(newPredecessor));
+        }
+        if (!published) {
+            socketManager.closeCommunicator(newPredecessor);
+            return;
         }
+        if (oldPredecessor != null)
+            socketManager.closeCommunicator(oldPredecessor);//chiudo connessione verso vecchio predecessore
+        moveKey(newPredecessor);
+    }
+
+    /**
+     * @param predecessor the current predecessor, or null
+     * @param node        the node that has called notify
+     * @return true if there is no predecessor, or if node is between the predecessor and this node
+     */
+    private boolean isBetterPredecessor(NodeInterface predecessor, NodeInterface node) {
+        if (predecessor == null)
+            return true;
+        return checkInterval(predecessor.getNodeId(), node.getNodeId(), getNodeId())
+                && !(predecessor.getNodeId().equals(node.getNodeId())); //entro solo se n è diverso dal predecessore
     }
 
     /**
@@ -401,21 +740,23 @@ public class Node implements NodeInterface, Serializable {
 
     /**
      * Receives an id to be found. Checks if the the node with that id is present inside in the successor list
-     * or if it is the predecessor. Otherwise the search is forwarded to the findSuccessor method.
+     * or if it is the predecessor. Otherwise the search is forwarded to findSuccessorAsync, with the CLIENT priority.
      *
      * @param id id of node to be found
      * @return The found node
      * @throws IOException           if an I/O error occurs
      * @throws TimerExpiredException if a timer expires
      */
-    private synchronized NodeInterface lookup(Long id) throws IOException, TimerExpiredException {
-        for (NodeInterface nodeInterface : successorList)
+    private NodeInterface lookup(Long id) throws IOException, TimerExpiredException {
+        RoutingState state = routing.get();
+        for (NodeInterface nodeInterface : state.getSuccessorList())
             if (id.equals(nodeInterface.getNodeId()))
                 return nodeInterface;
-        if (id.equals(predecessor.getNodeId()))
+        NodeInterface predecessor = state.getPredecessor();
+        if (predecessor != null && id.equals(predecessor.getNodeId()))
             return predecessor;
         else {
-            NodeInterface returnNode = findSuccessor(id);
+            NodeInterface returnNode = Futures.await(findSuccessorAsync(id, Priority.CLIENT));
             if (returnNode == null)
                 throw new TimerExpiredException();
             return returnNode;
@@ -425,6 +766,8 @@ public class Node implements NodeInterface, Serializable {
     /**
      * The method has an internal state. It represents the line in the finger table. So to refresh the entire finger
      * table is necessary to call this method many times as finger table dimension.
+     * The lookup and the connection are done without holding updateLock, the new finger is published holding it
+     * if the finger has not been changed in the meantime
      *
      * @throws IOException           if an I/O error occurs
      * @throws TimerExpiredException if a timer expires
@@ -434,22 +777,88 @@ public class Node implements NodeInterface, Serializable {
         nextFinger = nextFinger + 1;
         if (nextFinger > dimFingerTable)
             nextFinger = 1;
-        //fix cast
-        idToFind = (nodeId + ((long) Math.pow(2, nextFinger - 1))) % (long) Math.pow(2, dimFingerTable);
+        idToFind = ring.fingerStart(nodeId, nextFinger - 1);
         NodeInterface node = findSuccessor(idToFind);
         if (node == null)
             throw new TimerExpiredException();
-        if (!node.getNodeId().equals(fingerTable.get(nextFinger - 1).getNodeId())) { //se il nuovo nodo è diverso da quello già presente
-            NodeInterface newConnection;
-            try {
-                socketManager.closeCommunicator(fingerTable.get(nextFinger - 1).getNodeId());//chiudo connessione verso il vecchio nodo
-                newConnection = socketManager.createConnection(node);
-                fingerTable.replace(nextFinger - 1, newConnection);
-            } catch (ConnectionErrorException e) {
-                throw new UnexpectedBehaviourException();
+        int index = nextFinger - 1;
+        if (PROXIMITY_FINGERS)
+            node = closestFingerCandidate(node, index);
+        NodeInterface oldFinger = routing.get().getFingerTable().get(index);
+        if (node.getNodeId().equals(oldFinger.getNodeId())) //se il nuovo nodo è uguale a quello già presente
+            return;
+        NodeInterface newConnection = acquireConnection(node, new ArrayList<>());
+        boolean published;
+        synchronized (updateLock) {
+            RoutingState state = routing.get();
+            published = state.getFingerTable().get(index) == oldFinger;
+            if (published)
+                routing.set(state.withFinger(index, newConnection));
+        }
+        //chiudo connessione verso il vecchio nodo, or the new one if the finger has been changed in the meantime
+        socketManager.closeCommunicator(published ? oldFinger : newConnection);
+    }
+
+    /**
+     * Proximity neighbor selection: any node between the start of the finger and the start of the next one
+     * keeps the lookups in O(log N) hops, so the candidates are the successor of the start and the nodes
+     * of its successorList in that interval (at most PROXIMITY_CANDIDATES, the current finger first),
+     * and the one with the smallest round trip time is chosen.
+     * The current finger (or the successor, if the finger is not a candidate) is kept unless another candidate
+     * is closer by PROXIMITY_MARGIN
+     *
+     * @param successor successor of the start of the finger
+     * @param index     index of the finger, from 0
+     * @return the chosen node, successor if it is the only candidate
+     * @throws IOException           if an I/O error occurs
+     * @throws TimerExpiredException if a timer expires
+     */
+    private NodeInterface closestFingerCandidate(NodeInterface successor, int index) throws IOException, TimerExpiredException {
+        long start = ring.fingerStart(nodeId, index);
+        long width = ring.distance(start, index + 1 < ring.getBits() ? ring.fingerStart(nodeId, index + 1) : nodeId);
+        if (Long.compareUnsigned(ring.distance(start, successor.getNodeId()), width) >= 0)
+            return successor; //no node in the interval
+        NodeInterface connection;
+        try {
+            connection = socketManager.createConnection(successor);
+        } catch (ConnectionErrorException e) {
+            return successor;
+        }
+        List<NodeInterface> successorList;
+        try {
+            successorList = connection.getSuccessorList();
+        } finally {
+            socketManager.closeCommunicator(connection);
+        }
+        NodeInterface oldFinger = routing.get().getFingerTable().get(index);
+        Map<Long, NodeInterface> inInterval = new LinkedHashMap<>();
+        for (NodeInterface candidate : successorList)
+            if (Long.compareUnsigned(ring.distance(start, candidate.getNodeId()), width) < 0)
+                inInterval.putIfAbsent(candidate.getNodeId(), candidate);
+        Map<Long, NodeInterface> candidates = new LinkedHashMap<>();
+        candidates.put(successor.getNodeId(), successor);
+        if (inInterval.containsKey(oldFinger.getNodeId())) //so the finger does not change only because it was not probed
+            candidates.putIfAbsent(oldFinger.getNodeId(), inInterval.get(oldFinger.getNodeId()));
+        for (NodeInterface candidate : inInterval.values())
+            if (candidates.size() < PROXIMITY_CANDIDATES)
+                candidates.putIfAbsent(candidate.getNodeId(), candidate);
+        if (candidates.size() == 1)
+            return successor;
+
+        Map<Long, CompletableFuture<Double>> rtts = new HashMap<>();
+        for (NodeInterface candidate : candidates.values())
+            rtts.put(candidate.getNodeId(), socketManager.probeRtt(candidate));
+        Futures.await(CompletableFuture.allOf(rtts.values().toArray(new CompletableFuture<?>[0])));
+        NodeInterface best = candidates.containsKey(oldFinger.getNodeId()) ? candidates.get(oldFinger.getNodeId()) : successor;
+        double bestRtt = rtts.get(best.getNodeId()).join();
+        for (NodeInterface candidate : candidates.values()) {
+            double rtt = rtts.get(candidate.getNodeId()).join();
+            if (rtt < bestRtt * PROXIMITY_MARGIN) {
+                best = candidate;
+                bestRtt = rtt;
             }
         }
-        //else non faccio niente, perchè il vecchio nodo della finger è uguale a quello nuovo
+        return best;
     }
 
     /**
@@ -462,12 +871,7 @@ public class Node implements NodeInterface, Serializable {
      * (return true if pred == succ)
      */
     private boolean checkInterval(long pred, long index, long succ) {
-        if (pred == succ)
-            return true;
-        if (pred > succ)
-            return (index > pred && index < Math.pow(2, dimFingerTable)) || (index >= 0 && index < succ);
-        else
-            return index > pred && index < succ;
+        return pred == succ || ring.between(pred, index, succ);
     }
 
     /**
@@ -480,12 +884,7 @@ public class Node implements NodeInterface, Serializable {
      * (return true if pred == succ)
      */
     private boolean checkIntervalEquivalence(long pred, long index, long succ) {
-        if (pred == succ)
-            return true;
-        if (pred > succ)
-            return (index > pred && index < Math.pow(2, dimFingerTable)) || (index >= 0 && index <= succ);
-        else
-            return index > pred && index <= succ;
+        return ring.betweenRightIncluded(pred, index, succ);
     }
 
     /**
@@ -498,12 +897,7 @@ public class Node implements NodeInterface, Serializable {
      * (return false if pred == succ)
      */
     private boolean checkIntervalClosest(long pred, long index, long succ) {
-        if (pred == succ)
-            return false;
-        if (pred > succ)
-            return (index > pred && index < Math.pow(2, dimFingerTable)) || (index >= 0 && index < succ);
-        else
-            return index > pred && index < succ;
+        return ring.between(pred, index, succ);
     }
 
     /**
@@ -513,18 +907,24 @@ public class Node implements NodeInterface, Serializable {
      *
      * @param disconnectedId nodeId of disconnected node to check
      */
-    public synchronized void checkDisconnectedNode(Long disconnectedId) {
-        CopyOnWriteArrayList<NodeInterface> successorListClone = new CopyOnWriteArrayList<>(successorList);
-        for (NodeInterface nodeInterface : successorListClone)
-            if (nodeInterface.getNodeId().equals(disconnectedId)) //se il nodo disconnesso è il successore lo metto = this
-                successorList.remove(nodeInterface);
-        if (successorList.isEmpty())
-            successorList.add(this);
-        if (predecessor != null && predecessor.getNodeId().equals(disconnectedId)) //se il nodo disconnesso è il predecessore lo metto = null
-            predecessor = null;
-        for (int i = 0; i < dimFingerTable; i++) //se il nodo disconnesso è uno della finger lo metto = this
-            if (fingerTable.get(i).getNodeId().equals(disconnectedId))
-                fingerTable.replace(i, this);
+    public void checkDisconnectedNode(Long disconnectedId) {
+        synchronized (updateLock) {
+            routing.set(routing.get().withoutNode(disconnectedId, this));
+        }
+        if (locationCache != null)
+            locationCache.invalidate(disconnectedId);
+    }
+
+    /**
+     * @return the controller of the test network, or a DisconnectedController if the node has been created
+     * without it (as the nodes of an in-process ring, see LocalRing)
+     * @throws ConnectionErrorException if the controller is not available
+     * @throws IOException              if an I/O error occurs
+     */
+    private ControllerInterface openController() throws ConnectionErrorException, IOException {
+        if (ipController == null)
+            return new DisconnectedController();
+        return new SocketNodeController(ipController, portController).openController(this);
     }
 
     /**
@@ -536,13 +936,12 @@ public class Node implements NodeInterface, Serializable {
     }
 
     /**
-     * Called at the end of create and join, the method starts the thread responsible of accepting incoming connections
+     * Called by create and join once the SocketManager exists, the method starts the thread responsible of accepting incoming connections
      *
      * @param socketPort port at which the other nodes have to connect
      */
     private void startSocketListener(int socketPort) {
-        SocketNodeListener socketNodeListener = new SocketNodeListener(this, socketPort);
-        Executors.newCachedThreadPool().submit(socketNodeListener);
+        SocketManager.getTransport().listen(this, socketPort);
     }
 
     /**
@@ -585,31 +984,91 @@ public class Node implements NodeInterface, Serializable {
      * @throws TimerExpiredException
      */
     @Override
-    public synchronized NodeInterface addKey(Map.Entry<Long, Object> keyValue) throws IOException, TimerExpiredException {
-        Long hashKey = keyValue.getKey() % (long) Math.pow(2, dimFingerTable);
-        if (hashKey.equals(this.nodeId) || successorList.get(0).getNodeId().equals(this.getNodeId())) {
+    public NodeInterface addKey(Map.Entry<Long, Object> keyValue) throws IOException, TimerExpiredException {
+        return Futures.await(addKeyAsync(keyValue));
+    }
+
+    /**
+     * {@inheritDoc}
+     * A node found in the location cache stores the key only if it still owns it: otherwise its entry is removed
+     * and the owner is found with a lookup, so a stale entry never leaves a copy of the key on another node
+     *
+     * @param keyValue the map element to be stored in the network
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<NodeInterface> addKeyAsync(Map.Entry<Long, Object> keyValue) {
+        Long hashKey = Hash.getHash().calculateKeyHash(keyValue.getKey());
+        RoutingState state = routing.get();
+        if (hashKey.equals(this.nodeId) || state.getSuccessor().getNodeId().equals(this.getNodeId())) {
             addKeyToStore(keyValue);
-            return this;
+            return CompletableFuture.completedFuture(this);
         }
-        NodeInterface newNodeKey;
+        NodeInterface cachedOwner = locationCache.get(hashKey);
+        if (cachedOwner != null)
+            return askOwner(cachedOwner, owner -> owner.storeKeyAsync(keyValue, true))
+                    .handle((reply, throwable) -> throwable == null && reply.isOwner())
+                    .thenCompose(stored -> stored ? CompletableFuture.completedFuture(cachedOwner)
+                            : resolveAddKey(hashKey, keyValue, state));
+        return resolveAddKey(hashKey, keyValue, state);
+    }
+
+    /**
+     * Stores the key in its owner, found with a lookup
+     *
+     * @param hashKey  position of the key in the ring
+     * @param keyValue the map element to be stored in the network
+     * @param state    routing state of the node
+     * @return future completed with the node that stores the key
+     */
+    private CompletableFuture<NodeInterface> resolveAddKey(Long hashKey, Map.Entry<Long, Object> keyValue, RoutingState state) {
+        NodeInterface predecessor = state.getPredecessor();
+        CompletableFuture<NodeInterface> newNodeKeyFuture;
         if (predecessor != null && hashKey.equals(predecessor.getNodeId()))
-            newNodeKey = predecessor;
+            newNodeKeyFuture = CompletableFuture.completedFuture(predecessor);
         else
-            newNodeKey = findSuccessor(hashKey);
+            newNodeKeyFuture = findSuccessorAsync(hashKey, Priority.CLIENT);
 
-        if (newNodeKey.getNodeId().equals(nodeId)) {
-            addKeyToStore(keyValue);
-            return this;
-        }
-        NodeInterface newNodeCommunicator;
-        try {
-            newNodeCommunicator = socketManager.createConnection(newNodeKey);
-        } catch (ConnectionErrorException e) {
-            throw new UnexpectedBehaviourException();
+        return newNodeKeyFuture.thenCompose(newNodeKey -> {
+            if (newNodeKey.getNodeId().equals(nodeId)) {
+                addKeyToStore(keyValue);
+                return CompletableFuture.completedFuture(this);
+            }
+            return askOwner(newNodeKey, owner -> owner.storeKeyAsync(keyValue, false))
+                    .thenApply(reply -> newNodeKey);
+        });
+    }
+
+    /**
+     * Sends a request to the node that should own a key (this node, a virtual node of the process or a remote one)
+     * and updates the location cache with its reply: the interval (predecessor, owner] is cached if the node owns
+     * the key, otherwise (or if the request fails) the cached interval of the node is removed
+     *
+     * @param owner   the node that should own the key
+     * @param request the request to send to the node
+     * @return future completed with the reply of the node
+     */
+    private CompletableFuture<KeyReply> askOwner(NodeInterface owner, Function<NodeInterface, CompletableFuture<KeyReply>> request) {
+        CompletableFuture<KeyReply> reply;
+        if (owner.getNodeId().equals(nodeId))
+            reply = request.apply(this);
+        else {
+            NodeInterface ownerCommunicator;
+            try {
+                ownerCommunicator = socketManager.createConnection(owner);
+            } catch (ConnectionErrorException e) {
+                locationCache.invalidate(owner.getNodeId());
+                return Futures.failed(e);
+            }
+            reply = request.apply(ownerCommunicator)
+                    .whenComplete((keyReply, throwable) -> socketManager.closeCommunicator(ownerCommunicator));
         }
-        newNodeCommunicator.addKey(keyValue);
-        socketManager.closeCommunicator(newNodeKey.getNodeId());
-        return newNodeKey;
+        return reply.whenComplete((keyReply, throwable) -> {
+            if (throwable == null && keyReply.isOwner() && keyReply.getPredecessorId() != null)
+                locationCache.put(keyReply.getPredecessorId(), NodeRef.of(owner));
+            else
+                locationCache.invalidate(owner.getNodeId());
+        });
     }
 
     /**
@@ -618,10 +1077,55 @@ public class Node implements NodeInterface, Serializable {
      * @param keyValue new key-value entry to be added
      */
     @Override
-    public synchronized void addKeyToStore(Map.Entry<Long, Object> keyValue) {
+    public void addKeyToStore(Map.Entry<Long, Object> keyValue) {
         keyStore.put(keyValue.getKey(), keyValue.getValue());
     }
 
+    /**
+     * {@inheritDoc}
+     * Without ownerOnly the key is stored even if the node does not own it, as addKeyToStore. With ownerOnly a node
+     * that does not know its predecessor does not store it, so the sender falls back to the lookup
+     *
+     * @param keyValue  new key-value entry to be added
+     * @param ownerOnly {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<KeyReply> storeKeyAsync(Map.Entry<Long, Object> keyValue, boolean ownerOnly) {
+        KeyReply reply = keyReply(null, keyValue.getKey());
+        if (!ownerOnly || reply.isOwner())
+            addKeyToStore(keyValue);
+        return CompletableFuture.completedFuture(reply);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param key key to be retrieved
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<KeyReply> retrieveKeyAsync(Long key) {
+        return CompletableFuture.completedFuture(keyReply(keyStore.get(key), key));
+    }
+
+    /**
+     * @param value value of the key (null for addKey)
+     * @param key   the key
+     * @return the reply of this node for the key: it owns the key if it is alone in the ring,
+     * or if the key is between its predecessor (excluded) and itself (included)
+     */
+    private KeyReply keyReply(Object value, Long key) {
+        RoutingState state = routing.get();
+        if (state.getSuccessor().equals(this))
+            return new KeyReply(value, nodeId, true);
+        NodeInterface predecessor = state.getPredecessor();
+        if (predecessor == null)
+            return new KeyReply(value, null, false);
+        long hashKey = Hash.getHash().calculateKeyHash(key);
+        return new KeyReply(value, predecessor.getNodeId(), checkIntervalEquivalence(predecessor.getNodeId(), hashKey, nodeId));
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -629,20 +1133,25 @@ public class Node implements NodeInterface, Serializable {
      * @return {@inheritDoc}
      */
     @Override
-    public synchronized Object retrieveKeyFromStore(Long key) {
+    public Object retrieveKeyFromStore(Long key) {
         return keyStore.get(key);
     }
 
     /**
-     * Moves some keys from a node to its new predecessor
+     * Moves some keys from a node to its new predecessor.
+     * The keyStore is shared by the virtual nodes of the process, so only the keys of this node are moved
+     * (see localOwner), and nothing is moved if the new predecessor is a virtual node of the same process
      *
+     * @param predecessor the new predecessor
      * @throws IOException if an I/O error occurs
      */
-    private synchronized void moveKey() throws IOException {
+    private synchronized void moveKey(NodeInterface predecessor) throws IOException {
+        if (socketManager.getLocalNode(predecessor.getNodeId()) != null)
+            return;
         for (Map.Entry<Long, Object> keyValue :
                 keyStore.entrySet()) {
-            long hashKey = keyValue.getKey() % (long) Math.pow(2, dimFingerTable);
-            if (checkIntervalEquivalence(this.nodeId, hashKey, predecessor.getNodeId())) {
+            long hashKey = Hash.getHash().calculateKeyHash(keyValue.getKey());
+            if (checkIntervalEquivalence(this.nodeId, hashKey, predecessor.getNodeId()) && localOwner(hashKey) == this) {
                 try {
                     predecessor.addKey(new AbstractMap.SimpleEntry<>(keyValue.getKey(), keyValue.getValue()));
                     keyStore.remove(keyValue.getKey());
@@ -652,6 +1161,19 @@ public class Node implements NodeInterface, Serializable {
         }
     }
 
+    /**
+     * @param hashKey position of a key in the ring
+     * @return the node of this process (this node or one of the virtual nodes that share its keyStore)
+     * that follows hashKey, so the one that stores the key
+     */
+    private Node localOwner(long hashKey) {
+        Node owner = this;
+        for (Node localNode : socketManager.getLocalNodes())
+            if (Long.compareUnsigned(ring.distance(hashKey, localNode.nodeId), ring.distance(hashKey, owner.nodeId)) < 0)
+                owner = localNode;
+        return owner;
+    }
+
     /**
      * Method called by Main in order to send to controller the messages of start/end findKey
      *
@@ -676,57 +1198,97 @@ public class Node implements NodeInterface, Serializable {
      * @throws TimerExpiredException
      */
     @Override
-    public synchronized Object findKey(Long key) throws IOException, TimerExpiredException {
-        long hashKey = key % (long) Math.pow(2, dimFingerTable);
-        if (successorList.get(0).equals(this))
-            return keyStore.get(key);
+    public Object findKey(Long key) throws IOException, TimerExpiredException {
+        return Futures.await(findKeyAsync(key));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param key of the value that the node wants to find
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Object> findKeyAsync(Long key) {
+        long hashKey = Hash.getHash().calculateKeyHash(key);
+        RoutingState state = routing.get();
+        if (state.getSuccessor().equals(this))
+            return CompletableFuture.completedFuture(keyStore.get(key));
 
+        NodeInterface predecessor = state.getPredecessor();
         if (predecessor != null && checkIntervalEquivalence(predecessor.getNodeId(), hashKey, nodeId))
-            return keyStore.get(key);
+            return CompletableFuture.completedFuture(keyStore.get(key));
+
+        NodeInterface cachedOwner = locationCache.get(hashKey);
+        if (cachedOwner != null)
+            return askOwner(cachedOwner, owner -> owner.retrieveKeyAsync(key))
+                    .handle((reply, throwable) -> throwable == null && reply.isOwner() ? reply : null)
+                    .thenCompose(reply -> reply != null ? CompletableFuture.completedFuture(reply.getValue())
+                            : resolveFindKey(hashKey, key));
+        return resolveFindKey(hashKey, key);
+    }
 
-        NodeInterface searchedNode = findSuccessor(hashKey);
-        if (searchedNode == null)
-            throw new TimerExpiredException();
-        NodeInterface searchedNodeCommunicator;
-        try {
-            searchedNodeCommunicator = socketManager.createConnection(searchedNode);
-        } catch (ConnectionErrorException e) {
-            throw new UnexpectedBehaviourException();
-        }
-        Object searchedKey = searchedNodeCommunicator.findKey(key);
-        socketManager.closeCommunicator(searchedNode.getNodeId());
-        return searchedKey;
+    /**
+     * Retrieves the value of the key from its owner, found with a lookup
+     *
+     * @param hashKey position of the key in the ring
+     * @param key     of the value that the node wants to find
+     * @return future completed with the value, null if it does not exist
+     */
+    private CompletableFuture<Object> resolveFindKey(long hashKey, Long key) {
+        return findSuccessorAsync(hashKey, Priority.CLIENT).thenCompose(searchedNode -> {
+            if (searchedNode.getNodeId().equals(nodeId))
+                return CompletableFuture.completedFuture(keyStore.get(key));
+            return askOwner(searchedNode, owner -> owner.retrieveKeyAsync(key))
+                    .thenApply(KeyReply::getValue);
+        });
     }
 
     /**
-     * This method handles the voluntarily departure of a node
+     * This method handles the voluntarily departure of a node, together with its virtual nodes
      *
      * @throws IOException if an I/O error occurs
      */
     public synchronized void leave() throws IOException {
         transferKey();
-        UpdateNode.stopUpdate();
-        SocketNodeListener.stopListening();
+        for (Node localNode : socketManager.getLocalNodes())
+            localNode.updateNode.stopUpdate();
+        SocketManager.getTransport().stopListening(this);
         exit(0);
     }
 
     /**
-     * This method transfers all the keys of a node to its successor
+     * This method transfers all the keys of a node to its successor.
+     * Each key is sent to the first successor, not of this process, of the node that stores it (see localOwner),
+     * because the virtual nodes leave together with this node
      *
      * @throws IOException if an I/O error occurs
      */
     private synchronized void transferKey() throws IOException {
         for (Map.Entry<Long, Object> keyValue :
                 keyStore.entrySet()) {
+            NodeInterface successor = localOwner(Hash.getHash().calculateKeyHash(keyValue.getKey())).remoteSuccessor();
             try {
-                successorList.get(0).addKey(new AbstractMap.SimpleEntry<>(keyValue.getKey(), keyValue.getValue()));
+                successor.addKey(new AbstractMap.SimpleEntry<>(keyValue.getKey(), keyValue.getValue()));
             } catch (TimerExpiredException e) {
                 err.println("Lost key. Successor is disconnected");
             }
-            keyStore.remove(keyValue);
+            keyStore.remove(keyValue.getKey());
         }
     }
 
+    /**
+     * @return the first node of the successorList that is not a node of this process, or the first successor
+     * if all of them are
+     */
+    private NodeInterface remoteSuccessor() {
+        List<NodeInterface> successorList = routing.get().getSuccessorList();
+        for (NodeInterface successor : successorList)
+            if (socketManager.getLocalNode(successor.getNodeId()) == null)
+                return successor;
+        return successorList.get(0);
+    }
+
     @Override
     public Long getNodeId() {
         return nodeId;
@@ -748,7 +1310,7 @@ public class Node implements NodeInterface, Serializable {
 
     @Override
     public NodeInterface getPredecessor() {
-        return predecessor;
+        return routing.get().getPredecessor();
     }
 
     @Override
@@ -756,16 +1318,6 @@ public class Node implements NodeInterface, Serializable {
         return ipAddress;
     }
 
-    /**
-     * Not used in this class
-     *
-     * @return {@inheritDoc}
-     */
-    @Override
-    public int getInitialSocketPort() {
-        throw new UnexpectedBehaviourException();
-    }
-
     @Override
     public int getSocketPort() {
         return socketPort;
@@ -777,8 +1329,19 @@ public class Node implements NodeInterface, Serializable {
         throw new UnexpectedBehaviourException();
     }
 
-    Map<Integer, NodeInterface> getFingerTable() {
-        return fingerTable;
+    public LookupMode getLookupMode() {
+        return lookupMode;
+    }
+
+    /**
+     * @param lookupMode how the lookups of this node are resolved when they need other nodes
+     */
+    public void setLookupMode(LookupMode lookupMode) {
+        this.lookupMode = lookupMode;
+    }
+
+    List<NodeInterface> getFingerTable() {
+        return routing.get().getFingerTable();
     }
 
     /**
@@ -791,6 +1354,16 @@ public class Node implements NodeInterface, Serializable {
         throw new UnexpectedBehaviourException();
     }
 
+    /**
+     * Not used in this class
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public HashAlgorithm getInitialHashAlgorithm() {
+        throw new UnexpectedBehaviourException();
+    }
+
     @Override
     public int getDimFingerTable() {
         return dimFingerTable;
@@ -803,11 +1376,19 @@ public class Node implements NodeInterface, Serializable {
 
     @Override
     public List<NodeInterface> getSuccessorList() {
-        return successorList;
+        return routing.get().getSuccessorList();
+    }
+
+    @Override
+    public CompletableFuture<List<NodeInterface>> getSuccessorListAsync() {
+        return CompletableFuture.completedFuture(getSuccessorList());
     }
 
     @Override
     public String toString() {
+        RoutingState state = routing.get();
+        NodeInterface predecessor = state.getPredecessor();
+        List<NodeInterface> fingerTable = state.getFingerTable();
         String string = "--------------------------\n" +
                 "NODE ID: " + nodeId + "\n\n" +
                 "PREDECESSOR:\t";
@@ -817,9 +1398,8 @@ public class Node implements NodeInterface, Serializable {
             string = string + "null\n";
         string = string +
                 "SUCCESSOR LIST:";
-        if (successorList != null)
-            for (NodeInterface nodeInterface : successorList)
-                string = string + "\t" + nodeInterface.getNodeId();
+        for (NodeInterface nodeInterface : state.getSuccessorList())
+            string = string + "\t" + nodeInterface.getNodeId();
         string = string + "\n\n" +
                 "FINGER TABLE:\n";
         for (int i = 0; i < fingerTable.size() && i < dimFingerTable; i++)
@@ -3,11 +3,13 @@ package com.ssau.chord.model.node;
 
 import com.ssau.chord.model.exceptions.TimerExpiredException;
 import com.ssau.chord.model.network.SocketManager;
+import com.ssau.chord.model.network.message.Priority;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface NodeInterface extends Serializable {
 
@@ -36,6 +38,7 @@ public interface NodeInterface extends Serializable {
      * requested nodeId. Then, if is not present, call the 'closestPrecedingNodeList' method, given NodeId as parameter.
      * At the end the the method is called on the node returned form the 'closestPrecedingNodeList'. If the node
      * is itself return the current node.
+     * The lookup has the MAINTENANCE priority: it is used by join and fixFingers
      *
      * @param id NodeId to be found
      * @return The found Node object
@@ -44,26 +47,55 @@ public interface NodeInterface extends Serializable {
      */
     NodeInterface findSuccessor(Long id) throws IOException, TimerExpiredException;
 
-    NodeInterface getPredecessor() throws IOException, TimerExpiredException;
+    /**
+     * Asynchronous version of findSuccessor: the calling thread is not blocked while the
+     * lookup travels through the other nodes
+     *
+     * @param id       NodeId to be found
+     * @param priority CLIENT for the lookups started by addKey, findKey and lookup, MAINTENANCE for the ones
+     *                 started by join and fixFingers; every node of the path handles and forwards the lookup
+     *                 with this priority
+     * @return future completed with the found Node object, or exceptionally with a TimerExpiredException
+     * if a node on the path does not answer within the timer
+     */
+    CompletableFuture<NodeInterface> findSuccessorAsync(Long id, Priority priority);
 
-    String getIpAddress();
+    /**
+     * Step of an iterative lookup: the node does not forward the lookup, it answers only with the successor of id
+     * if it is in its successorList, otherwise with the candidates for the next hop (the closest preceding node
+     * first, then the other nodes of its successorList and fingerTable that precede id)
+     *
+     * @param id       NodeId to be found
+     * @param priority priority of the lookup
+     * @return future completed with the NextHop, or exceptionally with a TimerExpiredException
+     * if the node does not answer within the timer
+     */
+    CompletableFuture<NextHop> nextHopAsync(Long id, Priority priority);
 
     /**
-     * Used to ask the node its socketPort for the first time, after the port is saved locally and will be
-     * accessed through getSocketPort()
+     * Lookup routed with direct reply: if the node knows the successor of id it sends it to origin,
+     * otherwise it forwards the lookup to its closest preceding node, without waiting for any answer
      *
-     * @return socketPort of other node
-     * @throws TimerExpiredException if timer expires
+     * @param id       NodeId to be found
+     * @param origin   the node that started the lookup, to which the successor is sent
+     * @param lookupId id of the lookup in the table of origin
+     * @param hops     number of nodes that have forwarded the lookup
+     * @param priority priority of the lookup, given by origin
+     * @throws IOException if the lookup can not be sent to the node
      */
-    int getInitialSocketPort() throws TimerExpiredException;
+    void routeLookup(Long id, NodeInterface origin, Long lookupId, int hops, Priority priority) throws IOException;
+
+    NodeInterface getPredecessor() throws IOException, TimerExpiredException;
+
+    String getIpAddress();
 
     int getSocketPort();
 
     void setSocketPort(int socketPort);
 
     /**
-     * Used to ask the node the dimension of the finger table for the first time,
-     * after the port is saved locally and will be accessed through getDimFingerTable()
+     * Used to know the dimension of the finger table of the node for the first time, from the response to
+     * the hello of the connection, after it will be accessed through getDimFingerTable()
      * (Used only during join phase)
      *
      * @return dimension of finger table
@@ -71,6 +103,16 @@ public interface NodeInterface extends Serializable {
      */
     int getInitialDimFingerTable() throws TimerExpiredException;
 
+    /**
+     * Used to know the hash function of the network, chosen by the node that created it, from the response to
+     * the hello of the connection
+     * (Used only during join phase)
+     *
+     * @return hash function of the network
+     * @throws TimerExpiredException if timer expires
+     */
+    HashAlgorithm getInitialHashAlgorithm() throws TimerExpiredException;
+
     int getDimFingerTable();
 
     Long getNodeId();
@@ -81,6 +123,13 @@ public interface NodeInterface extends Serializable {
 
     List<NodeInterface> getSuccessorList() throws TimerExpiredException;
 
+    /**
+     * Asynchronous version of getSuccessorList
+     *
+     * @return future completed with the successor list, or exceptionally with a TimerExpiredException
+     */
+    CompletableFuture<List<NodeInterface>> getSuccessorListAsync();
+
     //Key
 
     /**
@@ -93,6 +142,15 @@ public interface NodeInterface extends Serializable {
      */
     NodeInterface addKey(Map.Entry<Long, Object> keyValue) throws IOException, TimerExpiredException;
 
+    /**
+     * Asynchronous version of addKey
+     *
+     * @param keyValue the map element to be stored in the network
+     * @return future completed with the node in which the key is stored,
+     * or exceptionally with a TimerExpiredException
+     */
+    CompletableFuture<NodeInterface> addKeyAsync(Map.Entry<Long, Object> keyValue);
+
     /**
      * This method handles the search of a value given its key
      *
@@ -103,6 +161,35 @@ public interface NodeInterface extends Serializable {
      */
     Object findKey(Long key) throws IOException, TimerExpiredException;
 
+    /**
+     * Asynchronous version of findKey
+     *
+     * @param key of the value that the node wants to find
+     * @return future completed with the value if it exists (null otherwise),
+     * or exceptionally with a TimerExpiredException
+     */
+    CompletableFuture<Object> findKeyAsync(Long key);
+
+    /**
+     * Stores the key-value tuple in this node, as addKeyToStore, and tells if the node owns the key
+     *
+     * @param keyValue  new key-value entry to be added
+     * @param ownerOnly true to store the key only if the node owns it, as when the node has been taken from
+     *                  a location cache; false to store it anyway, as when the node has been found by a lookup
+     * @return future completed with the reply of the node (owner and predecessor),
+     * or exceptionally with a TimerExpiredException
+     */
+    CompletableFuture<KeyReply> storeKeyAsync(Map.Entry<Long, Object> keyValue, boolean ownerOnly);
+
+    /**
+     * Retrieves the value of the key from this node, as retrieveKeyFromStore, and tells if the node owns the key
+     *
+     * @param key key to be retrieved
+     * @return future completed with the reply of the node (value, owner and predecessor),
+     * or exceptionally with a TimerExpiredException
+     */
+    CompletableFuture<KeyReply> retrieveKeyAsync(Long key);
+
     /**
      * This method adds the new key-value tuple to the local set of the keys that the node has
      *
@@ -0,0 +1,191 @@
+package com.ssau.chord.model.node;
+
+
+import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+import com.ssau.chord.model.network.SocketManager;
+import com.ssau.chord.model.network.message.Priority;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Immutable reference to a node (nodeId, ipAddress, socketPort), sent in the messages instead of a Node.
+ * It is used only to open a connection through SocketManager.createConnection and to compare the nodeIds:
+ * the methods that need a connection to the node throw UnexpectedBehaviourException
+ */
+public final class NodeRef implements NodeInterface {
+    private final Long nodeId;
+    private final String ipAddress;
+    private final int socketPort;
+
+    /**
+     * @param nodeId     nodeId of the node
+     * @param ipAddress  ipAddress of the node
+     * @param socketPort socketPort on which the node accepts the connections
+     */
+    public NodeRef(Long nodeId, String ipAddress, int socketPort) {
+        this.nodeId = nodeId;
+        this.ipAddress = ipAddress;
+        this.socketPort = socketPort;
+    }
+
+    /**
+     * @param node a Node, a NodeCommunicator or a NodeRef
+     * @return the reference to node (node itself if it is already a NodeRef), or null if node is null
+     */
+    public static NodeRef of(NodeInterface node) {
+        if (node == null || node instanceof NodeRef)
+            return (NodeRef) node;
+        return new NodeRef(node.getNodeId(), node.getIpAddress(), node.getSocketPort());
+    }
+
+    @Override
+    public Long getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    @Override
+    public int getSocketPort() {
+        return socketPort;
+    }
+
+    @Override
+    public void setNodeId(Long nodeId) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public void setSocketPort(int socketPort) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public SocketManager getSocketManager() {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public void notify(NodeInterface node) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public NodeInterface findSuccessor(Long id) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public CompletableFuture<NodeInterface> findSuccessorAsync(Long id, Priority priority) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public CompletableFuture<NextHop> nextHopAsync(Long id, Priority priority) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public void routeLookup(Long id, NodeInterface origin, Long lookupId, int hops, Priority priority) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public NodeInterface getPredecessor() {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public int getInitialDimFingerTable() {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public HashAlgorithm getInitialHashAlgorithm() {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public int getDimFingerTable() {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public List<NodeInterface> getSuccessorList() {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public CompletableFuture<List<NodeInterface>> getSuccessorListAsync() {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public NodeInterface addKey(Map.Entry<Long, Object> keyValue) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public CompletableFuture<NodeInterface> addKeyAsync(Map.Entry<Long, Object> keyValue) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public Object findKey(Long key) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public CompletableFuture<Object> findKeyAsync(Long key) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public CompletableFuture<KeyReply> storeKeyAsync(Map.Entry<Long, Object> keyValue, boolean ownerOnly) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public CompletableFuture<KeyReply> retrieveKeyAsync(Long key) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public void addKeyToStore(Map.Entry<Long, Object> keyValue) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public Object retrieveKeyFromStore(Long key) {
+        throw new UnexpectedBehaviourException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof NodeRef))
+            return false;
+        NodeRef nodeRef = (NodeRef) o;
+        return socketPort == nodeRef.socketPort && nodeId.equals(nodeRef.nodeId) && ipAddress.equals(nodeRef.ipAddress);
+    }
+
+    @Override
+    public int hashCode() {
+        return nodeId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return nodeId + " (" + ipAddress + ":" + socketPort + ")";
+    }
+}
@@ -0,0 +1,79 @@
+package com.ssau.chord.model.node;
+
+
+/**
+ * Modular arithmetic of the identifier space of the network, a ring of 2^bits identifiers (1 <= bits <= 64).
+ * The identifiers are longs read as unsigned numbers, so with 64 bits the whole range of a long is used;
+ * every operation is done with masks and unsigned comparisons, without allocations and without doubles
+ */
+public final class Ring {
+    private final int bits;
+    private final long mask;
+
+    /**
+     * @param bits number of bits of the identifiers (dimension of the finger table)
+     * @throws IllegalArgumentException if bits is not between 1 and 64
+     */
+    public Ring(int bits) {
+        if (bits < 1 || bits > Long.SIZE)
+            throw new IllegalArgumentException("The identifiers must have from 1 to 64 bits");
+        this.bits = bits;
+        this.mask = bits == Long.SIZE ? -1L : (1L << bits) - 1;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @param value any long
+     * @return value modulo 2^bits, as unsigned identifier
+     */
+    public long normalize(long value) {
+        return value & mask;
+    }
+
+    /**
+     * @param from starting identifier
+     * @param to   arrival identifier
+     * @return the clockwise distance from from to to (unsigned), 0 if they are equal
+     */
+    public long distance(long from, long to) {
+        return (to - from) & mask;
+    }
+
+    /**
+     * @param id    nodeId of the node
+     * @param index index of the finger, from 0 to bits - 1
+     * @return the start of the finger: id + 2^index modulo 2^bits
+     */
+    public long fingerStart(long id, int index) {
+        return (id + (1L << index)) & mask;
+    }
+
+    /**
+     * @param from start of the interval
+     * @param id   identifier to check
+     * @param to   end of the interval
+     * @return true if id is in the clockwise interval (from, to), both excluded.
+     * It is false if from == to (the interval is empty)
+     */
+    public boolean between(long from, long id, long to) {
+        long distance = distance(from, id);
+        return distance != 0 && Long.compareUnsigned(distance, distance(from, to)) < 0;
+    }
+
+    /**
+     * @param from start of the interval
+     * @param id   identifier to check
+     * @param to   end of the interval
+     * @return true if id is in the clockwise interval (from, to], from excluded and to included.
+     * It is true for every id if from == to (the interval is the whole ring)
+     */
+    public boolean betweenRightIncluded(long from, long id, long to) {
+        if (from == to)
+            return true;
+        long distance = distance(from, id);
+        return distance != 0 && Long.compareUnsigned(distance, distance(from, to)) <= 0;
+    }
+}
@@ -0,0 +1,184 @@
+package com.ssau.chord.model.node;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the routing state of a node: successorList, predecessor and fingerTable.
+ * The node publishes it through an AtomicReference, so the readers (lookups, keys, handlers) take the
+ * current snapshot without any lock, while the updates (stabilize, fixFingers, notify, disconnections)
+ * build a new snapshot with the with* methods and publish it
+ * <p>
+ * Besides the fingers by index, the snapshot keeps the distinct nodeIds of the fingers (the node itself excluded)
+ * in a long[] sorted by clockwise distance from the node, with the parallel array of the references:
+ * closestPrecedingFinger is a binary search on it, without boxing
+ */
+final class RoutingState {
+    private final long nodeId;
+    private final Ring ring;
+    private final List<NodeInterface> successorList;
+    private final NodeInterface predecessor;
+    private final NodeInterface[] fingerTable;
+    private final long[] fingerIds;
+    private final NodeInterface[] fingerRefs;
+
+    /**
+     * @param nodeId        nodeId of the node that owns the state
+     * @param ring          identifier space of the network
+     * @param successorList successorList, never empty
+     * @param predecessor   predecessor, null if not yet known
+     * @param fingerTable   fingerTable, one node for each finger, not modified after
+     */
+    private RoutingState(long nodeId, Ring ring, List<NodeInterface> successorList, NodeInterface predecessor,
+                         NodeInterface[] fingerTable) {
+        this.nodeId = nodeId;
+        this.ring = ring;
+        this.successorList = Collections.unmodifiableList(successorList);
+        this.predecessor = predecessor;
+        this.fingerTable = fingerTable;
+
+        Map<Long, NodeInterface> fingers = new HashMap<>();
+        for (NodeInterface finger : fingerTable)
+            if (finger.getNodeId() != nodeId)
+                fingers.putIfAbsent(finger.getNodeId(), finger);
+        //the sign bit is flipped so the signed sort orders the distances as unsigned (needed with 64 bits)
+        long[] distances = new long[fingers.size()];
+        int i = 0;
+        for (long fingerId : fingers.keySet())
+            distances[i++] = distance(fingerId) ^ Long.MIN_VALUE;
+        Arrays.sort(distances);
+        fingerIds = new long[distances.length];
+        fingerRefs = new NodeInterface[distances.length];
+        for (i = 0; i < distances.length; i++) {
+            fingerIds[i] = ring.normalize((distances[i] ^ Long.MIN_VALUE) + nodeId);
+            fingerRefs[i] = fingers.get(fingerIds[i]);
+        }
+    }
+
+    /**
+     * @param node           the node that owns the state, with its nodeId already computed
+     * @param ring identifier space of the network, one finger for each bit
+     * @return the state of a node alone in the network: node as successor and in all the fingers, no predecessor
+     */
+    static RoutingState initial(NodeInterface node, Ring ring) {
+        NodeInterface[] fingerTable = new NodeInterface[ring.getBits()];
+        Arrays.fill(fingerTable, node);
+        return new RoutingState(node.getNodeId(), ring, Collections.singletonList(node), null, fingerTable);
+    }
+
+    /**
+     * @param node the node that owns the state, before the create or join (the size of the ring is not yet known)
+     * @return a state without fingers, with node as successor and no predecessor
+     */
+    static RoutingState empty(NodeInterface node) {
+        return new RoutingState(node.getNodeId(), new Ring(Long.SIZE), Collections.singletonList(node), null,
+                new NodeInterface[0]);
+    }
+
+    private long distance(long id) {
+        return ring.distance(nodeId, id);
+    }
+
+    /**
+     * @param id searched id
+     * @return the finger that precedes id (between the node and id, both excluded) with the smallest distance
+     * from id, null if no finger precedes id
+     */
+    NodeInterface closestPrecedingFinger(long id) {
+        long limit = distance(id);
+        int low = 0;
+        int high = fingerIds.length;
+        while (low < high) { //first finger not preceding id
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(distance(fingerIds[middle]), limit) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low == 0 ? null : fingerRefs[low - 1];
+    }
+
+    List<NodeInterface> getSuccessorList() {
+        return successorList;
+    }
+
+    NodeInterface getSuccessor() {
+        return successorList.get(0);
+    }
+
+    NodeInterface getPredecessor() {
+        return predecessor;
+    }
+
+    /**
+     * @return the fingers by index
+     */
+    List<NodeInterface> getFingerTable() {
+        return Collections.unmodifiableList(Arrays.asList(fingerTable));
+    }
+
+    /**
+     * @param successorList the new successorList, not empty
+     * @return a copy of this state with successorList
+     */
+    RoutingState withSuccessorList(List<NodeInterface> successorList) {
+        return new RoutingState(nodeId, ring, new ArrayList<>(successorList), predecessor, fingerTable);
+    }
+
+    /**
+     * @param successor the new first successor
+     * @return a copy of this state with successor in the first position of the successorList
+     */
+    RoutingState withSuccessor(NodeInterface successor) {
+        List<NodeInterface> list = new ArrayList<>(successorList);
+        list.set(0, successor);
+        return new RoutingState(nodeId, ring, list, predecessor, fingerTable);
+    }
+
+    /**
+     * @param predecessor the new predecessor, or null
+     * @return a copy of this state with predecessor
+     */
+    RoutingState withPredecessor(NodeInterface predecessor) {
+        return new RoutingState(nodeId, ring, successorList, predecessor, fingerTable);
+    }
+
+    /**
+     * @param index  index of the finger
+     * @param finger the new node of the finger
+     * @return a copy of this state with finger in the position index of the fingerTable
+     */
+    RoutingState withFinger(int index, NodeInterface finger) {
+        NodeInterface[] fingers = fingerTable.clone();
+        fingers[index] = finger;
+        return new RoutingState(nodeId, ring, successorList, predecessor, fingers);
+    }
+
+    /**
+     * @param disconnectedId nodeId of the disconnected node
+     * @param node           the node that owns the state
+     * @return a copy of this state without the disconnected node: it is removed from the successorList
+     * (node if the list becomes empty), the predecessor becomes null and the fingers become node
+     */
+    RoutingState withoutNode(Long disconnectedId, NodeInterface node) {
+        List<NodeInterface> list = new ArrayList<>(successorList.size());
+        for (NodeInterface successor : successorList)
+            if (!successor.getNodeId().equals(disconnectedId))
+                list.add(successor);
+        if (list.isEmpty())
+            list.add(node);
+        NodeInterface newPredecessor = predecessor;
+        if (predecessor != null && predecessor.getNodeId().equals(disconnectedId))
+            newPredecessor = null;
+        NodeInterface[] fingers = fingerTable.clone();
+        for (int i = 0; i < fingers.length; i++)
+            if (fingers[i].getNodeId().equals(disconnectedId))
+                fingers[i] = node;
+        return new RoutingState(nodeId, ring, list, newPredecessor, fingers);
+    }
+}
@@ -7,7 +7,6 @@ import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Map;
 
 /**
  * Класс, который управляет обновлением атрибутов узла (predecessor, successor List,
@@ -15,7 +14,13 @@ import java.util.Map;
  * Класс также отвечает за оценку стабильности узла
  */
 public class UpdateNode implements Runnable {
-    private static Boolean active = true;
+    /**
+     * pause after each fixFingers and at the end of every round, in milliseconds (read when the node starts,
+     * so an in-process ring can be stabilized faster)
+     */
+    private final long fingerDelay = Long.getLong("chord.update.fingerDelayMillis", 200);
+    private final long roundDelay = Long.getLong("chord.update.roundDelayMillis", 1000);
+    private volatile boolean active = true;
     private Node node;
 
     /**
@@ -28,7 +33,7 @@ public class UpdateNode implements Runnable {
     /**
      * Called to stop the update when the node has disconnected
      */
-    static void stopUpdate() {
+    void stopUpdate() {
         active = false;
     }
 
@@ -36,12 +41,15 @@ public class UpdateNode implements Runnable {
      * Поток, ответственный за периодический вызов node.stabilize() и node.fix Finger(),
      * для оценки стабильности узла на основе: проверка, изменен ли successor list
      * и finger table.
+     * The successorList is stabilized also before the node has a predecessor, if its successor is another node:
+     * a node that has joined together with others (as the virtual nodes of a process) may never be notified
+     * by its predecessor, and would keep a wrong successor
      */
     @Override
     public void run() {
         boolean stable = false;
         while (active) {
-            if (node.getPredecessor() != null) {
+            if (node.getPredecessor() != null || !node.getSuccessorList().get(0).getNodeId().equals(node.getNodeId())) {
                 //Get Old List Value to be compared at the end
                 ArrayList<Long> oldSuccessorList = new ArrayList<>();
                 for (NodeInterface n : node.getSuccessorList())
@@ -70,13 +78,12 @@ public class UpdateNode implements Runnable {
 
             // get old Finger Table
             ArrayList<Long> oldFingerTableList = new ArrayList<>();
-            for (Map.Entry<Integer, NodeInterface> entry : node.getFingerTable().entrySet()) {
-                oldFingerTableList.add(entry.getValue().getNodeId());
-            }
+            for (NodeInterface finger : node.getFingerTable())
+                oldFingerTableList.add(finger.getNodeId());
             for (int i = 0; i < node.getDimFingerTable(); i++) {
                 try {
                     node.fixFingers();
-                    Thread.sleep(200);
+                    Thread.sleep(fingerDelay);
                 } catch (IOException e) {
                     throw new UnexpectedBehaviourException();
                 } catch (TimerExpiredException e) {
@@ -90,8 +97,8 @@ public class UpdateNode implements Runnable {
                 }
             }
             ArrayList<Long> newFingerTableList = new ArrayList<>();
-            for (Map.Entry<Integer, NodeInterface> entry : node.getFingerTable().entrySet())
-                newFingerTableList.add(entry.getValue().getNodeId());
+            for (NodeInterface finger : node.getFingerTable())
+                newFingerTableList.add(finger.getNodeId());
             stable = stable && oldFingerTableList.equals(newFingerTableList);  //The Order matters
             oldFingerTableList.clear();
             newFingerTableList.clear();
@@ -101,7 +108,7 @@ public class UpdateNode implements Runnable {
                 e.printStackTrace();
             }
             try {
-                Thread.sleep(1000);
+                Thread.sleep(roundDelay);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -0,0 +1,214 @@
+package com.ssau.chord.model.start;
+
+import com.ssau.chord.model.exceptions.ConnectionErrorException;
+import com.ssau.chord.model.exceptions.NodeIdAlreadyExistsException;
+import com.ssau.chord.model.exceptions.TimerExpiredException;
+import com.ssau.chord.model.network.LocalTransport;
+import com.ssau.chord.model.network.SocketManager;
+import com.ssau.chord.model.node.Node;
+import com.ssau.chord.model.node.NodeInterface;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.System.err;
+import static java.lang.System.out;
+
+/**
+ * Ring of nodes running in this JVM over the LocalTransport, without controller: every node has its own
+ * ipAddress (10.0.x.y) and the same port, and the messages are passed between the nodes without sockets.
+ * Used to measure routing and stabilization of large rings on one machine, without the cost of TCP.
+ * <p>
+ * Usage: LocalRing nodes [dim] [operations]. The nodes join one at a time through the first one, then the ring
+ * is checked until every node has the right successorList and predecessor, and operations lookups, addKey and
+ * findKey are timed. The pace of the stabilization is set with chord.update.fingerDelayMillis and
+ * chord.update.roundDelayMillis
+ */
+public class LocalRing {
+    static final int PORT = 5000;
+    private static final long POLL_INTERVAL = 100;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private int nextIndex;
+
+    /**
+     * Creates the ring: the first node creates the network, the others join it through the first one.
+     * The transport of the JVM becomes the LocalTransport
+     *
+     * @param size      number of nodes
+     * @param dim       dimension of the finger table
+     * @param joinDelay pause between two joins, in milliseconds
+     * @return the ring
+     * @throws ConnectionErrorException if a node can not join
+     * @throws IOException              if an I/O error occurs
+     */
+    public static LocalRing start(int size, int dim, long joinDelay) throws ConnectionErrorException, IOException {
+        SocketManager.setTransport(new LocalTransport());
+        LocalRing ring = new LocalRing();
+        Node first = new Node(ipAddress(ring.nextIndex++), PORT);
+        first.create(dim);
+        ring.nodes.add(first);
+        for (int i = 1; i < size; i++) {
+            ring.addNode();
+            try {
+                Thread.sleep(joinDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Adds a node to the ring, that joins it through the first node
+     *
+     * @return the new node, null if its NodeId already exists
+     * @throws ConnectionErrorException if the node can not join
+     * @throws IOException              if an I/O error occurs
+     */
+    public Node addNode() throws ConnectionErrorException, IOException {
+        String ipAddress = ipAddress(nextIndex++);
+        Node node = new Node(ipAddress, PORT);
+        try {
+            node.join(nodes.get(0).getIpAddress(), PORT);
+        } catch (NodeIdAlreadyExistsException e) {
+            err.println("Node " + ipAddress + ": NodeId already exists, skipped");
+            return null;
+        }
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * @return the ipAddress of the next node added by addNode
+     */
+    String nextIpAddress() {
+        return ipAddress(nextIndex);
+    }
+
+    private static String ipAddress(int index) {
+        return "10.0." + (index / 250) + "." + (index % 250 + 1);
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of nodes whose successorList or predecessor are not the next nodes or the previous node
+     * of the ring (a stale successorList can give wrong lookups even if the first successor is right)
+     */
+    public int wrongNodes() {
+        List<Node> ring = sortedNodes();
+        int wrong = 0;
+        for (int i = 0; i < ring.size(); i++) {
+            Node node = ring.get(i);
+            List<NodeInterface> successorList = node.getSuccessorList();
+            boolean right = true;
+            for (int j = 0; j < Math.min(successorList.size(), ring.size() - 1); j++)
+                right &= successorList.get(j).getNodeId().equals(ring.get((i + j + 1) % ring.size()).getNodeId());
+            NodeInterface predecessor = node.getPredecessor();
+            Long previous = ring.get((i + ring.size() - 1) % ring.size()).getNodeId();
+            if (!right || (ring.size() > 1 && (predecessor == null || !predecessor.getNodeId().equals(previous))))
+                wrong++;
+        }
+        return wrong;
+    }
+
+    /**
+     * @return the nodes sorted by nodeId (unsigned)
+     */
+    private List<Node> sortedNodes() {
+        List<Node> ring = new ArrayList<>(nodes);
+        ring.sort((first, second) -> Long.compareUnsigned(first.getNodeId(), second.getNodeId()));
+        return ring;
+    }
+
+    /**
+     * Waits until every node has the right successorList and predecessor
+     *
+     * @param timeout maximum wait, in milliseconds
+     * @return true if the ring is stable, false if the timeout has expired before
+     */
+    public boolean awaitStable(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (wrongNodes() > 0) {
+            if (System.currentTimeMillis() > deadline)
+                return false;
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param id identifier of the ring
+     * @return the node that should be the successor of id
+     */
+    public Node expectedSuccessor(long id) {
+        List<Node> ring = sortedNodes();
+        for (Node node : ring)
+            if (Long.compareUnsigned(node.getNodeId(), id) >= 0)
+                return node;
+        return ring.get(0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            err.println("Usage: LocalRing nodes [dim] [operations]");
+            System.exit(1);
+        }
+        int size = Integer.parseInt(args[0]);
+        int dim = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        long start = System.nanoTime();
+        LocalRing ring = start(size, dim, Long.getLong("chord.localRing.joinDelayMillis", 50));
+        out.println("Joined " + ring.nodes.size() + " nodes in " + millisSince(start) + " ms");
+
+        start = System.nanoTime();
+        boolean stable = ring.awaitStable(Long.getLong("chord.localRing.timeoutMillis", 600000));
+        out.println((stable ? "Stable" : "Not stable (" + ring.wrongNodes() + " wrong nodes)") + " after " + millisSince(start) + " ms");
+
+        Random random = new Random(1);
+        long mask = dim == Long.SIZE ? -1L : (1L << dim) - 1;
+        int wrongLookups = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            long id = random.nextLong() & mask;
+            Node node = ring.nodes.get(random.nextInt(ring.nodes.size()));
+            try {
+                if (!node.findSuccessor(id).getNodeId().equals(ring.expectedSuccessor(id).getNodeId()))
+                    wrongLookups++;
+            } catch (TimerExpiredException e) {
+                wrongLookups++;
+            }
+        }
+        out.println(operations + " lookups in " + millisSince(start) + " ms, " + wrongLookups + " wrong");
+
+        int foundKeys = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            long key = random.nextInt(Integer.MAX_VALUE);
+            try {
+                ring.nodes.get(random.nextInt(ring.nodes.size())).addKey(new AbstractMap.SimpleEntry<>(key, "v" + key));
+                if (("v" + key).equals(ring.nodes.get(random.nextInt(ring.nodes.size())).findKey(key)))
+                    foundKeys++;
+            } catch (TimerExpiredException ignore) {
+            }
+        }
+        out.println(operations + " addKey and findKey in " + millisSince(start) + " ms, " + foundKeys + " found");
+        System.exit(0);
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -6,6 +6,11 @@ import com.ssau.chord.model.exceptions.ConnectionErrorException;
 import com.ssau.chord.model.exceptions.NodeIdAlreadyExistsException;
 import com.ssau.chord.model.exceptions.TimerExpiredException;
 import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+import com.ssau.chord.model.network.NioTransport;
+import com.ssau.chord.model.network.NodeThreads;
+import com.ssau.chord.model.network.SocketManager;
+import com.ssau.chord.model.node.HashAlgorithm;
+import com.ssau.chord.model.node.LookupMode;
 import com.ssau.chord.model.node.Node;
 import com.ssau.chord.model.node.NodeInterface;
 import org.apache.commons.cli.*;
@@ -18,7 +23,6 @@ import java.net.UnknownHostException;
 import java.util.AbstractMap;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.Executors;
 
 import static java.lang.System.err;
 import static java.lang.System.out;
@@ -29,6 +33,8 @@ public class Main {
     private static final String PRINT_COMMAND = "p";
     private static final String EXIT_COMMAND = "exit";
     private static final String FIND_COMMAND = "find";
+    private static final String SOCKET_TRANSPORT = "socket";
+    private static final String NIO_TRANSPORT = "nio";
 
     public static void main(String[] args) {
 
@@ -82,6 +88,30 @@ public class Main {
         debugOpt.setRequired(false);
         options.addOption(debugOpt);
 
+        Option transportOpt = new Option("tr", "transport", true, "Transport: socket (default) or nio");
+        transportOpt.setRequired(false);
+        options.addOption(transportOpt);
+
+        Option virtualThreadsOpt = new Option("vt", "virtualThreads", false, "Run the blocking work on virtual threads (Java 21)");
+        virtualThreadsOpt.setRequired(false);
+        options.addOption(virtualThreadsOpt);
+
+        Option iterativeOpt = new Option("it", "iterative", false, "Resolve the lookups iteratively instead of recursively");
+        iterativeOpt.setRequired(false);
+        options.addOption(iterativeOpt);
+
+        Option directReplyOpt = new Option("dr", "directReply", false, "Route the lookups recursively with direct reply to this node");
+        directReplyOpt.setRequired(false);
+        options.addOption(directReplyOpt);
+
+        Option hashOpt = new Option("ha", "hash", true, "Hash of the nodeIds when the network is created: endpoint, sha1 (default), sha256 or mix64");
+        hashOpt.setRequired(false);
+        options.addOption(hashOpt);
+
+        Option virtualNodesOpt = new Option("vn", "virtualNodes", true, "Number of positions of the node in the ring (virtual nodes), 1 by default");
+        virtualNodesOpt.setRequired(false);
+        options.addOption(virtualNodesOpt);
+
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
         CommandLine cmd = null;
@@ -98,6 +128,26 @@ public class Main {
         localPort = Integer.parseInt(cmd.getOptionValue("port"));
         type = Integer.parseInt(cmd.getOptionValue("type"));
 
+        switch (cmd.getOptionValue("transport", SOCKET_TRANSPORT)) {
+            case SOCKET_TRANSPORT:
+                break;
+            case NIO_TRANSPORT:
+                SocketManager.setTransport(new NioTransport());
+                break;
+            default:
+                err.println("Transport not valid: use " + SOCKET_TRANSPORT + " or " + NIO_TRANSPORT);
+                System.exit(1);
+        }
+
+        if (cmd.hasOption("virtualThreads"))
+            NodeThreads.setVirtual(true);
+
+        int virtualNodes = Integer.parseInt(cmd.getOptionValue("virtualNodes", "1"));
+        if (virtualNodes <= 0) {
+            err.println("Virtual Nodes must be at least 1");
+            System.exit(1);
+        }
+
         Node node;
 
         switch (type) {
@@ -107,7 +157,7 @@ public class Main {
                     out.println("The Controller server is running on Port " + localPort + " ...");
                     while (true) {
                         Socket nodeSocket = listener.accept();
-                        Executors.newCachedThreadPool().submit(new SocketController(controller, nodeSocket));
+                        NodeThreads.start(new SocketController(controller, nodeSocket), "chord-controller");
                     }
                 } catch (IOException e) {
                     throw new UnexpectedBehaviourException();
@@ -122,17 +172,33 @@ public class Main {
                 } catch (UnknownHostException e) {
                     throw new UnexpectedBehaviourException();
                 }
+                if (cmd.hasOption("iterative"))
+                    node.setLookupMode(LookupMode.ITERATIVE);
+                else if (cmd.hasOption("directReply"))
+                    node.setLookupMode(LookupMode.DIRECT);
                 dimFingerTable = Integer.parseInt(cmd.getOptionValue("dim"));
                 if (dimFingerTable <= 0) {
                     err.println("Dim Finger Table can not be negative");
                     return;
                 }
+                if (dimFingerTable > Long.SIZE) {
+                    err.println("Dim Finger Table can not be greater than " + Long.SIZE);
+                    return;
+                }
+                HashAlgorithm hashAlgorithm;
+                try {
+                    hashAlgorithm = HashAlgorithm.parse(cmd.getOptionValue("hash", System.getProperty("chord.hash", "sha1")));
+                } catch (IllegalArgumentException e) {
+                    err.println("Hash not valid: use endpoint, sha1, sha256 or mix64");
+                    return;
+                }
                 out.println("-----------------------------");
-                out.println("Node Create : Local Port " + localPort + " - Dim " + dimFingerTable + " - ControllerIP " + controllerIP
+                out.println("Node Create : Local Port " + localPort + " - Dim " + dimFingerTable + " - Hash " + hashAlgorithm + " - ControllerIP " + controllerIP
                         + " - ControllerPort " + controllerPort);
                 out.println("-----------------------------");
                 try {
-                    node.create(dimFingerTable);
+                    node.create(dimFingerTable, hashAlgorithm);
+                    node.addVirtualNodes(virtualNodes);
                 } catch (ConnectionErrorException e) {
                     err.println("ERROR controller connection");
                 } catch (IOException e) {
@@ -156,6 +222,10 @@ public class Main {
                 } catch (UnknownHostException e) {
                     throw new UnexpectedBehaviourException();
                 }
+                if (cmd.hasOption("iterative"))
+                    node.setLookupMode(LookupMode.ITERATIVE);
+                else if (cmd.hasOption("directReply"))
+                    node.setLookupMode(LookupMode.DIRECT);
 
                 out.println("-----------------------------");
                 out.println("Node Join : Local Port " + localPort + " - ControllerIP " + controllerIP
@@ -164,6 +234,7 @@ public class Main {
 
                 try {
                     node.join(joinIP, joinPort);
+                    node.addVirtualNodes(virtualNodes);
                 } catch (ConnectionErrorException e) {
                     out.println("Wrong ip address or port");
                 } catch (NodeIdAlreadyExistsException e) {
@@ -0,0 +1,77 @@
+package com.ssau.chord.model.network;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class FailureDetectorTest {
+    private static final long START = 1_000_000_000L;
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @return a history that received a heartbeat every interval milliseconds, the last one at the returned time
+     */
+    private static long regularHeartbeats(FailureDetector.HeartbeatHistory history, long interval, int count) {
+        long now = START;
+        for (int i = 0; i < count; i++) {
+            now += millis(interval);
+            history.heartbeat(now);
+        }
+        return now;
+    }
+
+    @Test
+    public void regularNodeIsNotSuspected() {
+        FailureDetector.HeartbeatHistory history = new FailureDetector.HeartbeatHistory(START);
+        long last = regularHeartbeats(history, FailureDetector.INTERVAL, 50);
+        assertTrue(history.phi(last + millis(FailureDetector.INTERVAL)) < 1);
+    }
+
+    @Test
+    public void silentNodeIsSuspected() {
+        FailureDetector.HeartbeatHistory history = new FailureDetector.HeartbeatHistory(START);
+        long last = regularHeartbeats(history, FailureDetector.INTERVAL, 50);
+        assertTrue(history.phi(last + millis(10 * FailureDetector.INTERVAL)) > FailureDetector.THRESHOLD);
+    }
+
+    @Test
+    public void phiGrowsWithTheSilence() {
+        FailureDetector.HeartbeatHistory history = new FailureDetector.HeartbeatHistory(START);
+        long last = regularHeartbeats(history, FailureDetector.INTERVAL, 50);
+        double previous = -1;
+        for (long elapsed = 0; elapsed <= 4 * FailureDetector.INTERVAL; elapsed += 50) {
+            double phi = history.phi(last + millis(elapsed));
+            assertTrue(phi >= previous);
+            previous = phi;
+        }
+    }
+
+    @Test
+    public void irregularNodeIsToleratedLonger() {
+        FailureDetector.HeartbeatHistory regular = new FailureDetector.HeartbeatHistory(START);
+        long regularLast = regularHeartbeats(regular, FailureDetector.INTERVAL, 50);
+        FailureDetector.HeartbeatHistory irregular = new FailureDetector.HeartbeatHistory(START);
+        long irregularLast = START;
+        for (int i = 0; i < 50; i++) {
+            irregularLast += millis(i % 2 == 0 ? FailureDetector.INTERVAL / 5 : 9 * FailureDetector.INTERVAL / 5);
+            irregular.heartbeat(irregularLast);
+        }
+        long silence = millis(3 * FailureDetector.INTERVAL);
+        assertTrue(irregular.phi(irregularLast + silence) < regular.phi(regularLast + silence));
+    }
+
+    @Test
+    public void resetForgetsThePause() {
+        FailureDetector.HeartbeatHistory history = new FailureDetector.HeartbeatHistory(START);
+        long last = regularHeartbeats(history, FailureDetector.INTERVAL, 50);
+        long afterPause = last + millis(20 * FailureDetector.INTERVAL);
+        assertTrue(history.phi(afterPause) > FailureDetector.THRESHOLD);
+        history.reset(afterPause);
+        assertTrue(history.phi(afterPause + millis(FailureDetector.INTERVAL)) < 1);
+    }
+}
@@ -0,0 +1,201 @@
+package com.ssau.chord.model.network;
+
+import com.ssau.chord.model.network.message.*;
+import com.ssau.chord.model.node.HashAlgorithm;
+import com.ssau.chord.model.node.NextHop;
+import com.ssau.chord.model.node.NodeInterface;
+import com.ssau.chord.model.node.NodeRef;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageCodecTest {
+    private static final NodeInterface NODE = new NodeRef(42L, "10.0.0.7", 9001);
+    private static final NodeInterface HOST_NODE = new NodeRef(-3L, "node-a.example", 9002);
+
+    @After
+    public void disableSerializedValues() {
+        MessageCodec.setSerializedValues(false);
+    }
+
+    /**
+     * Encodes the message, checks the length field and decodes the rest of the frame
+     */
+    private static Message roundTrip(Message message) throws IOException {
+        ByteBuffer frame = new MessageCodec().encode(message);
+        assertEquals(frame.remaining() - Integer.BYTES, frame.getInt());
+        return MessageCodec.decode(frame.slice());
+    }
+
+    private static ByteBuffer frameWithoutLength(Message message) throws IOException {
+        ByteBuffer frame = new MessageCodec().encode(message);
+        frame.getInt();
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+        copy.put(frame).flip();
+        return copy;
+    }
+
+    @Test
+    public void findSuccessorRoundTrip() throws IOException {
+        FindSuccessorRequest request = (FindSuccessorRequest) roundTrip(new FindSuccessorRequest(-7L, Priority.CLIENT, 11L));
+        assertEquals(-7L, request.getId());
+        assertEquals(Priority.CLIENT, request.getPriority());
+        assertEquals(11L, request.getLockId().longValue());
+
+        FindSuccessorResponse response = (FindSuccessorResponse) roundTrip(new FindSuccessorResponse(HOST_NODE, Priority.CLIENT, 12L));
+        assertEquals(HOST_NODE, response.getNode());
+        assertEquals(Priority.CLIENT, response.getPriority());
+        assertEquals(12L, response.getLockId().longValue());
+    }
+
+    @Test
+    public void lookupPriorityRoundTrip() throws IOException {
+        for (Priority priority : Priority.values()) {
+            assertEquals(priority, roundTrip(new FindSuccessorRequest(1L, priority, 1L)).getPriority());
+            assertEquals(priority, roundTrip(new NextHopRequest(1L, priority, 1L)).getPriority());
+            assertEquals(priority, roundTrip(new NextHopResponse(new NextHop(false, Collections.singletonList(NODE)), priority, 1L)).getPriority());
+            assertEquals(priority, roundTrip(new RouteLookupRequest(1L, NODE, 1, priority, 1L)).getPriority());
+            assertEquals(priority, roundTrip(new LookupResult(NODE, priority, 1L)).getPriority());
+        }
+    }
+
+    @Test
+    public void nullNodeRoundTrip() throws IOException {
+        GetPredecessorResponse response = (GetPredecessorResponse) roundTrip(new GetPredecessorResponse(null, 3L));
+        assertNull(response.getNode());
+    }
+
+    @Test
+    public void successorListRoundTrip() throws IOException {
+        List<NodeInterface> successors = Arrays.asList(NODE, HOST_NODE);
+        GetSuccessorListResponse response = (GetSuccessorListResponse) roundTrip(new GetSuccessorListResponse(successors, 5L));
+        assertEquals(successors, response.getSuccessorList());
+    }
+
+    @Test
+    public void storedValuesRoundTrip() throws IOException {
+        for (Object value : new Object[]{null, "hello", 5L, 7}) {
+            AddKeyRequest request = (AddKeyRequest) roundTrip(new AddKeyRequest(new AbstractMap.SimpleEntry<>(9L, value), 1L));
+            assertEquals(9L, request.getKeyValue().getKey().longValue());
+            assertEquals(value, request.getKeyValue().getValue());
+        }
+        AddKeyRequest request = (AddKeyRequest) roundTrip(new AddKeyRequest(new AbstractMap.SimpleEntry<>(9L, new byte[]{1, 2, 3}), 1L));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) request.getKeyValue().getValue());
+    }
+
+    @Test
+    public void ownerOnlyRoundTrip() throws IOException {
+        assertTrue(((AddKeyRequest) roundTrip(new AddKeyRequest(new AbstractMap.SimpleEntry<>(9L, "v"), true, 1L))).isOwnerOnly());
+        assertFalse(((AddKeyRequest) roundTrip(new AddKeyRequest(new AbstractMap.SimpleEntry<>(9L, "v"), 1L))).isOwnerOnly());
+    }
+
+    @Test
+    public void ownershipRoundTrip() throws IOException {
+        AddKeyResponse added = (AddKeyResponse) roundTrip(new AddKeyResponse(NODE, 40L, true, 2L));
+        assertEquals(NODE, added.getNode());
+        assertEquals(40L, added.getPredecessorId().longValue());
+        assertTrue(added.isOwner());
+
+        FindKeyResponse found = (FindKeyResponse) roundTrip(new FindKeyResponse("value", null, false, 3L));
+        assertEquals("value", found.getValue());
+        assertNull(found.getPredecessorId());
+        assertFalse(found.isOwner());
+    }
+
+    @Test
+    public void helloRoundTrip() throws IOException {
+        HelloMessage hello = (HelloMessage) roundTrip(new HelloMessage(1L, HelloMessage.PROTOCOL_VERSION, 42L, 9001, 10, 17L));
+        assertEquals(HelloMessage.PROTOCOL_VERSION, hello.getVersion());
+        assertEquals(42L, hello.getNodeId().longValue());
+        assertEquals(9001, hello.getSocketPort());
+        assertEquals(10, hello.getDimFingerTable());
+        assertEquals(17L, hello.getTargetNodeId().longValue());
+
+        HelloResponse response = (HelloResponse) roundTrip(new HelloResponse(1L, HelloMessage.PROTOCOL_VERSION, 42L, 10, HashAlgorithm.MIX64));
+        assertEquals(HashAlgorithm.MIX64, response.getHashAlgorithm());
+        assertEquals(10, response.getDimFingerTable());
+    }
+
+    @Test
+    public void nextHopRoundTrip() throws IOException {
+        NextHopResponse response = (NextHopResponse) roundTrip(new NextHopResponse(new NextHop(true, Collections.singletonList(NODE)), Priority.MAINTENANCE, 4L));
+        assertTrue(response.getNextHop().isDone());
+        assertEquals(Collections.singletonList(NODE), response.getNextHop().getNodes());
+
+        RouteLookupRequest route = (RouteLookupRequest) roundTrip(new RouteLookupRequest(99L, HOST_NODE, 3, Priority.CLIENT, 6L));
+        assertEquals(99L, route.getId());
+        assertEquals(HOST_NODE, route.getOrigin());
+        assertEquals(3, route.getHops());
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void serializedValuesAreNotSentByDefault() throws IOException {
+        new MessageCodec().encode(new AddKeyRequest(new AbstractMap.SimpleEntry<>(1L, new ArrayList<String>()), 1L));
+    }
+
+    @Test
+    public void serializedValuesAreRejectedByDefault() throws IOException {
+        MessageCodec.setSerializedValues(true);
+        ByteBuffer frame = frameWithoutLength(new AddKeyRequest(new AbstractMap.SimpleEntry<>(1L, new ArrayList<>(Arrays.asList("a"))), 1L));
+        assertEquals(Collections.singletonList("a"), ((AddKeyRequest) MessageCodec.decode(frame.duplicate())).getKeyValue().getValue());
+
+        MessageCodec.setSerializedValues(false);
+        try {
+            MessageCodec.decode(frame);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAnotherVersion() throws IOException {
+        ByteBuffer frame = frameWithoutLength(new PingRequest(1L));
+        frame.put(0, (byte) (MessageCodec.VERSION - 1));
+        MessageCodec.decode(frame);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownHashAlgorithm() throws IOException {
+        ByteBuffer frame = frameWithoutLength(new HelloResponse(1L, HelloMessage.PROTOCOL_VERSION, 42L, 10, HashAlgorithm.SHA1));
+        frame.put(frame.limit() - 1, (byte) HashAlgorithm.values().length);
+        MessageCodec.decode(frame);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsListSizeLargerThanFrame() throws IOException {
+        ByteBuffer frame = frameWithoutLength(new GetSuccessorListResponse(Collections.singletonList(NODE), 1L));
+        frame.putInt(1 + 1 + Long.BYTES, Integer.MAX_VALUE);
+        MessageCodec.decode(frame);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeListSize() throws IOException {
+        ByteBuffer frame = frameWithoutLength(new NextHopResponse(new NextHop(false, Collections.singletonList(NODE)), Priority.CLIENT, 1L));
+        frame.putInt(1 + 1 + Long.BYTES + 1, -1);
+        MessageCodec.decode(frame);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFrame() throws IOException {
+        ByteBuffer frame = frameWithoutLength(new FindSuccessorRequest(5L, Priority.CLIENT, 1L));
+        frame.limit(frame.limit() - 1);
+        MessageCodec.decode(frame);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownPriority() throws IOException {
+        ByteBuffer frame = frameWithoutLength(new FindSuccessorRequest(5L, Priority.CLIENT, 1L));
+        frame.put(1 + 1 + Long.BYTES + Long.BYTES, (byte) Priority.values().length);
+        MessageCodec.decode(frame);
+    }
+}
@@ -0,0 +1,230 @@
+package com.ssau.chord.model.network;
+
+import com.ssau.chord.model.exceptions.UnexpectedBehaviourException;
+import com.ssau.chord.model.network.message.BusyResponse;
+import com.ssau.chord.model.network.message.CloseRequest;
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.MessageHandler;
+import com.ssau.chord.model.network.message.NotifyRequest;
+import com.ssau.chord.model.network.message.Priority;
+import com.ssau.chord.model.node.NodeRef;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MessageDispatcherTest {
+    private static final int MAX_TASKS = 100000;
+
+    private final MessageDispatcher dispatcher = MessageDispatcher.getDispatcher();
+    private final RecordingConnection connection = new RecordingConnection();
+
+    /**
+     * Message that runs a task when it is handled
+     */
+    private static final class TaskMessage implements Message {
+        private final boolean request;
+        private final Priority priority;
+        private final Runnable task;
+        private final Long lockId;
+
+        TaskMessage(boolean request, Priority priority, Long lockId, Runnable task) {
+            this.request = request;
+            this.priority = priority;
+            this.lockId = lockId;
+            this.task = task;
+        }
+
+        @Override
+        public void handle(MessageHandler messageHandler) {
+            task.run();
+        }
+
+        @Override
+        public Long getLockId() {
+            return lockId;
+        }
+
+        @Override
+        public boolean isRequest() {
+            return request;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return priority;
+        }
+    }
+
+    private static final class RecordingConnection implements Connection {
+        private final List<Message> sent = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void sendMessage(Message message) {
+            sent.add(message);
+        }
+
+        @Override
+        public void start(MessageHandler messageHandler) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        boolean busySent() {
+            synchronized (sent) {
+                for (Message message : sent)
+                    if (message instanceof BusyResponse)
+                        return true;
+                return false;
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fills the pool of the priority with requests blocked on release, until one is refused with a BusyResponse
+     */
+    private void saturate(Priority priority, CountDownLatch release) {
+        for (long i = 0; i < MAX_TASKS && !connection.busySent(); i++)
+            dispatcher.dispatch(new TaskMessage(true, priority, i, () -> await(release)), null, connection, Runnable::run);
+        assertTrue(connection.busySent());
+    }
+
+    @Test
+    public void orderedLaneKeepsTheSubmissionOrder() throws InterruptedException {
+        Executor lane = dispatcher.newOrderedLane();
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < 1000; i++) {
+            int index = i;
+            lane.execute(() -> executed.add(index));
+        }
+        lane.execute(done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, executed.get(i).intValue());
+    }
+
+    /**
+     * @return a handler whose NotifyRequest handling throws, and that records the handled CloseRequests in closed
+     */
+    private static MessageHandler throwingNotifyHandler(CountDownLatch closed) {
+        return (MessageHandler) Proxy.newProxyInstance(MessageHandler.class.getClassLoader(), new Class<?>[]{MessageHandler.class},
+                (proxy, method, args) -> {
+                    if (args != null && args[0] instanceof NotifyRequest)
+                        throw new UnexpectedBehaviourException();
+                    if (args != null && args[0] instanceof CloseRequest)
+                        closed.countDown();
+                    return null;
+                });
+    }
+
+    @Test
+    public void orderedLaneRunsTheTasksAfterAThrowingOne() throws InterruptedException {
+        Executor lane = dispatcher.newOrderedLane();
+        CountDownLatch done = new CountDownLatch(1);
+        lane.execute(() -> {
+            throw new UnexpectedBehaviourException();
+        });
+        lane.execute(done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closeIsHandledAfterAThrowingNotify() throws InterruptedException {
+        Executor lane = dispatcher.newOrderedLane();
+        CountDownLatch closed = new CountDownLatch(1);
+        MessageHandler handler = throwingNotifyHandler(closed);
+        dispatcher.dispatch(new NotifyRequest(new NodeRef(1L, "10.0.0.1", 5000), 1L), handler, connection, lane);
+        dispatcher.dispatch(new CloseRequest(2L), handler, connection, lane);
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void saturatedMaintenancePoolAnswersBusyInsteadOfRunningTheLane() {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(Priority.MAINTENANCE, release);
+            RecordingConnection laneConnection = new RecordingConnection();
+            CountDownLatch closed = new CountDownLatch(1);
+            dispatcher.dispatch(new CloseRequest(3L), throwingNotifyHandler(closed), laneConnection, dispatcher.newOrderedLane());
+            assertEquals(1, closed.getCount()); //not handled by the receiving thread
+            assertTrue(laneConnection.busySent());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void saturatedPoolAnswersBusyToTheRefusedRequest() {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(Priority.CLIENT, release);
+            long refused = -1;
+            synchronized (connection.sent) {
+                for (Message message : connection.sent)
+                    if (message instanceof BusyResponse)
+                        refused = message.getLockId();
+            }
+            assertTrue(refused >= 0);
+            assertEquals(1, connection.sent.size());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void saturatedMaintenancePoolDoesNotDelayClientRequests() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(Priority.MAINTENANCE, release);
+            CountDownLatch handled = new CountDownLatch(1);
+            dispatcher.dispatch(new TaskMessage(true, Priority.CLIENT, -1L, handled::countDown), null, connection, Runnable::run);
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void saturatedClientPoolDoesNotDelayMaintenanceRequests() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(Priority.CLIENT, release);
+            CountDownLatch handled = new CountDownLatch(1);
+            dispatcher.dispatch(new TaskMessage(true, Priority.MAINTENANCE, -1L, handled::countDown), null, connection, Runnable::run);
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void responsesAreHandledWhenTheRequestPoolsAreSaturated() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(Priority.CLIENT, release);
+            CountDownLatch handled = new CountDownLatch(1);
+            dispatcher.dispatch(new TaskMessage(false, Priority.CLIENT, -1L, handled::countDown), null, connection, Runnable::run);
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ssau.chord.model.network;
+
+import com.ssau.chord.model.network.message.AddKeyRequest;
+import com.ssau.chord.model.network.message.CloseRequest;
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.PingRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NioConnectionTest {
+    private static final NioTransport transport = new NioTransport();
+
+    private ServerSocket server;
+    private Socket peer;
+    private Connection connection;
+
+    @Before
+    public void connect() throws Exception {
+        server = new ServerSocket(0);
+        connection = transport.connect(null, "127.0.0.1", server.getLocalPort());
+        peer = server.accept();
+        connection.start(null);
+    }
+
+    @After
+    public void closeSockets() throws IOException {
+        peer.close();
+        server.close();
+    }
+
+    /**
+     * Reads the frames sent to the peer until the connection is closed
+     */
+    private List<Message> readAll() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        DataInputStream input = new DataInputStream(peer.getInputStream());
+        while (true) {
+            int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                return messages;
+            }
+            byte[] frame = new byte[length];
+            input.readFully(frame);
+            messages.add(MessageCodec.decode(ByteBuffer.wrap(frame)));
+        }
+    }
+
+    @Test
+    public void selectorKeepsServingAfterAFailingTask() throws Exception {
+        transport.executeOnSelector(() -> {
+            throw new IllegalStateException("failing selector task");
+        });
+        connection.sendMessage(new PingRequest(7L));
+        connection.close();
+        List<Message> messages = readAll();
+        assertEquals(1, messages.size());
+        assertEquals(7L, messages.get(0).getLockId().longValue());
+    }
+
+    @Test
+    public void closeWritesTheQueuedFrames() throws Exception {
+        char[] chars = new char[4096];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        int count = 2000; //more than the socket buffers, the peer is not reading
+        for (long i = 0; i < count; i++)
+            connection.sendMessage(new AddKeyRequest(new AbstractMap.SimpleEntry<>(i, value), i));
+        connection.sendMessage(new CloseRequest((long) count));
+        connection.close();
+
+        List<Message> messages = readAll();
+        assertEquals(count + 1, messages.size());
+        long expectedLockId = 0;
+        boolean closeReceived = false;
+        for (Message message : messages) {
+            if (message instanceof CloseRequest) {
+                closeReceived = true;
+                continue;
+            }
+            assertEquals(expectedLockId++, message.getLockId().longValue());
+            assertEquals(value, ((AddKeyRequest) message).getKeyValue().getValue());
+        }
+        assertTrue(closeReceived);
+    }
+
+    @Test
+    public void maintenanceFramesPassTheQueuedClientFrames() throws Exception {
+        char[] chars = new char[4096];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        int count = 2000;
+        for (long i = 0; i < count; i++)
+            connection.sendMessage(new AddKeyRequest(new AbstractMap.SimpleEntry<>(i, value), i));
+        connection.sendMessage(new PingRequest(-1L));
+        connection.close();
+
+        List<Message> messages = readAll();
+        assertEquals(count + 1, messages.size());
+        int pingIndex = -1;
+        for (int i = 0; i < messages.size(); i++)
+            if (messages.get(i) instanceof PingRequest)
+                pingIndex = i;
+        assertTrue(pingIndex >= 0 && pingIndex < count);
+    }
+
+    @Test(expected = IOException.class)
+    public void sendAfterCloseFails() throws IOException {
+        connection.close();
+        connection.sendMessage(new PingRequest(1L));
+    }
+}
@@ -0,0 +1,69 @@
+package com.ssau.chord.model.network;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs in the mode chosen with chord.threads: the platform one by default, the virtual one with the
+ * virtual-threads profile (mvn -Pvirtual-threads test, on Java 21)
+ */
+public class NodeThreadsTest {
+
+    private static boolean virtualRequested() {
+        return "virtual".equals(System.getProperty("chord.threads"));
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void modeFollowsTheProperty() throws Exception {
+        boolean supported;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            supported = true;
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+        assertEquals(virtualRequested() && supported, NodeThreads.isVirtual());
+    }
+
+    @Test
+    public void startRunsTheTaskOnANamedThreadOfTheMode() throws Exception {
+        CompletableFuture<Thread> runner = new CompletableFuture<>();
+        NodeThreads.start(() -> runner.complete(Thread.currentThread()), "chord-test");
+        Thread thread = runner.get(5, TimeUnit.SECONDS);
+        assertEquals("chord-test", thread.getName());
+        assertEquals(NodeThreads.isVirtual(), isVirtual(thread));
+    }
+
+    @Test
+    public void virtualPerTaskExecutorOnlyInTheVirtualMode() throws Exception {
+        ExecutorService executor = NodeThreads.newVirtualPerTaskExecutor();
+        if (!NodeThreads.isVirtual()) {
+            assertNull(executor);
+            return;
+        }
+        Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+        assertTrue(isVirtual(thread));
+        executor.shutdown();
+    }
+
+    @Test
+    public void platformThreadsAreDaemon() {
+        Thread thread = NodeThreads.platformFactory("chord-test-").newThread(() -> {
+        });
+        assertTrue(thread.isDaemon());
+        assertFalse(NodeThreads.isVirtual() && thread.getName().startsWith("chord-virtual"));
+    }
+}
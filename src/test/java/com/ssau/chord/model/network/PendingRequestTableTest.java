@@ -0,0 +1,74 @@
+package com.ssau.chord.model.network;
+
+import com.ssau.chord.model.exceptions.TimerExpiredException;
+import com.ssau.chord.model.network.message.Message;
+import com.ssau.chord.model.network.message.PingResponse;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PendingRequestTableTest {
+    private final PendingRequestTable table = new PendingRequestTable();
+
+    private static void assertTimerExpired(CompletableFuture<Message> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimerExpiredException);
+        }
+    }
+
+    @Test
+    public void lockIdsAreNotReused() {
+        Long first = table.nextLockId();
+        Long second = table.nextLockId();
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void responseCompletesTheRequest() throws Exception {
+        Long lockId = table.nextLockId();
+        CompletableFuture<Message> future = table.register(lockId, 10000);
+        PingResponse response = new PingResponse(lockId);
+        table.complete(lockId, response);
+        assertSame(response, future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void responseOfAnotherRequestIsIgnored() {
+        Long lockId = table.nextLockId();
+        CompletableFuture<Message> future = table.register(lockId, 10000);
+        table.complete(lockId + 1, new PingResponse(lockId + 1));
+        assertFalse(future.isDone());
+        table.fail(lockId);
+    }
+
+    @Test
+    public void timerExpires() throws Exception {
+        Long lockId = table.nextLockId();
+        assertTimerExpired(table.register(lockId, 50));
+    }
+
+    @Test
+    public void lateResponseIsDiscarded() throws Exception {
+        Long lockId = table.nextLockId();
+        CompletableFuture<Message> future = table.register(lockId, 20);
+        assertTimerExpired(future);
+        table.complete(lockId, new PingResponse(lockId));
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void failAllFailsEveryPendingRequest() throws Exception {
+        CompletableFuture<Message> first = table.register(table.nextLockId(), 10000);
+        CompletableFuture<Message> second = table.register(table.nextLockId(), 10000);
+        table.failAll();
+        assertTimerExpired(first);
+        assertTimerExpired(second);
+    }
+}
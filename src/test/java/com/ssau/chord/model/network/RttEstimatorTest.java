@@ -0,0 +1,56 @@
+package com.ssau.chord.model.network;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RttEstimatorTest {
+    private final RttEstimator estimator = new RttEstimator();
+
+    @Test
+    public void timeoutIsTheMaximumBeforeTheFirstSample() {
+        assertEquals(RttEstimator.MAX_TIMEOUT, estimator.getTimeout());
+        assertEquals(-1, estimator.getSmoothedRtt(), 0);
+    }
+
+    @Test
+    public void firstSampleInitializesTheEstimate() {
+        estimator.sample(400);
+        assertEquals(400, estimator.getSmoothedRtt(), 1e-9);
+        assertEquals(200, estimator.getRttVariation(), 1e-9);
+        assertEquals(clamp(400 + 4 * 200), estimator.getTimeout());
+    }
+
+    @Test
+    public void samplesAreSmoothed() {
+        estimator.sample(400);
+        estimator.sample(200);
+        assertEquals(0.75 * 200 + 0.25 * 200, estimator.getRttVariation(), 1e-9);
+        assertEquals(0.875 * 400 + 0.125 * 200, estimator.getSmoothedRtt(), 1e-9);
+        assertEquals(clamp((long) Math.ceil(375 + 4 * 200)), estimator.getTimeout());
+    }
+
+    @Test
+    public void timeoutIsBounded() {
+        estimator.sample(0.1);
+        assertEquals(RttEstimator.MIN_TIMEOUT, estimator.getTimeout());
+        RttEstimator slow = new RttEstimator();
+        slow.sample(100000);
+        assertEquals(RttEstimator.MAX_TIMEOUT, slow.getTimeout());
+    }
+
+    @Test
+    public void backOffDoublesTheTimeoutUntilTheMaximum() {
+        estimator.sample(0.1);
+        long timeout = estimator.getTimeout();
+        estimator.backOff();
+        assertEquals(clamp(2 * timeout), estimator.getTimeout());
+        for (int i = 0; i < 64; i++)
+            estimator.backOff();
+        assertEquals(RttEstimator.MAX_TIMEOUT, estimator.getTimeout());
+    }
+
+    private static long clamp(long timeout) {
+        return Math.min(Math.max(timeout, RttEstimator.MIN_TIMEOUT), RttEstimator.MAX_TIMEOUT);
+    }
+}
@@ -0,0 +1,54 @@
+package com.ssau.chord.model.node;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashAlgorithmTest {
+    private static final byte[] ABC = "abc".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void digestsTakeTheFirstEightBytes() {
+        assertEquals(0xa9993e364706816aL, HashAlgorithm.SHA1.hash(ABC));
+        assertEquals(0xba7816bf8f01cfeaL, HashAlgorithm.SHA256.hash(ABC));
+    }
+
+    @Test
+    public void endpointIsTheBigEndianNumber() {
+        assertEquals(0x616263L, HashAlgorithm.ENDPOINT.hash(ABC));
+        assertEquals(-5L, HashAlgorithm.ENDPOINT.hash(-5L));
+    }
+
+    @Test
+    public void mixedAlgorithmsSpreadAdjacentEndpoints() {
+        Ring ring = new Ring(6);
+        for (HashAlgorithm algorithm : new HashAlgorithm[]{HashAlgorithm.SHA1, HashAlgorithm.SHA256, HashAlgorithm.MIX64}) {
+            Set<Long> ids = new HashSet<>();
+            for (int port = 5000; port < 5016; port++)
+                ids.add(ring.normalize(algorithm.hash(("10.0.0.1:" + port).getBytes(StandardCharsets.UTF_8))));
+            assertTrue(algorithm + " gives " + ids.size() + " ids", ids.size() > 8); //ENDPOINT would give 16 adjacent ids
+        }
+    }
+
+    @Test
+    public void mix64OfLengthChangesTheHash() {
+        assertNotEquals(HashAlgorithm.MIX64.hash(new byte[]{0}), HashAlgorithm.MIX64.hash(new byte[]{0, 0}));
+    }
+
+    @Test
+    public void parseIgnoresCase() {
+        assertEquals(HashAlgorithm.SHA256, HashAlgorithm.parse(" sha256 "));
+        assertEquals(HashAlgorithm.MIX64, HashAlgorithm.parse("Mix64"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseRejectsUnknownNames() {
+        HashAlgorithm.parse("md5");
+    }
+}
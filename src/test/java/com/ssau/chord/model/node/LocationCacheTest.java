@@ -0,0 +1,82 @@
+package com.ssau.chord.model.node;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocationCacheTest {
+    private static final Ring RING = new Ring(6);
+    private static final long TTL = TimeUnit.SECONDS.toNanos(60);
+
+    private static NodeRef node(long nodeId) {
+        return new NodeRef(nodeId, "10.0.0." + nodeId, 5000);
+    }
+
+    private static Long ownerOf(LocationCache cache, long hashKey) {
+        NodeInterface owner = cache.get(hashKey);
+        return owner == null ? null : owner.getNodeId();
+    }
+
+    @Test
+    public void keyInTheIntervalGoesToTheOwner() {
+        LocationCache cache = new LocationCache(RING, 16, TTL);
+        cache.put(10, node(20));
+        assertEquals(20L, ownerOf(cache, 11).longValue());
+        assertEquals(20L, ownerOf(cache, 20).longValue()); //the owner is included
+        assertNull(ownerOf(cache, 10)); //the predecessor is excluded
+        assertNull(ownerOf(cache, 21));
+    }
+
+    @Test
+    public void intervalWrapsAroundTheRing() {
+        LocationCache cache = new LocationCache(RING, 16, TTL);
+        cache.put(60, node(3));
+        assertEquals(3L, ownerOf(cache, 62).longValue());
+        assertEquals(3L, ownerOf(cache, 0).longValue());
+        assertNull(ownerOf(cache, 59));
+        assertNull(ownerOf(cache, 4));
+    }
+
+    @Test
+    public void putRemovesTheOwnersInsideTheNewInterval() {
+        LocationCache cache = new LocationCache(RING, 16, TTL);
+        cache.put(10, node(15));
+        cache.put(15, node(20));
+        cache.put(10, node(20)); //15 has left: 20 owns (10, 20]
+        assertEquals(20L, ownerOf(cache, 12).longValue());
+        assertEquals(20L, ownerOf(cache, 18).longValue());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        LocationCache cache = new LocationCache(RING, 2, TTL);
+        cache.put(10, node(20));
+        cache.put(20, node(30));
+        cache.get(15); //20 becomes the most recently used
+        cache.put(30, node(40));
+        assertEquals(20L, ownerOf(cache, 15).longValue());
+        assertNull(ownerOf(cache, 25));
+        assertEquals(40L, ownerOf(cache, 35).longValue());
+    }
+
+    @Test
+    public void expiredEntryIsNotReturned() throws InterruptedException {
+        LocationCache cache = new LocationCache(RING, 16, TimeUnit.MILLISECONDS.toNanos(1));
+        cache.put(10, node(20));
+        Thread.sleep(10);
+        assertNull(ownerOf(cache, 15));
+    }
+
+    @Test
+    public void invalidateRemovesTheOwner() {
+        LocationCache cache = new LocationCache(RING, 16, TTL);
+        cache.put(10, node(20));
+        cache.put(20, node(30));
+        cache.invalidate(20L);
+        assertNull(ownerOf(cache, 15));
+        assertEquals(30L, ownerOf(cache, 25).longValue());
+    }
+}
@@ -0,0 +1,87 @@
+package com.ssau.chord.model.node;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RingTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroBits() {
+        new Ring(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMoreThan64Bits() {
+        new Ring(65);
+    }
+
+    @Test
+    public void normalizeKeepsTheLowBits() {
+        Ring ring = new Ring(6);
+        assertEquals(5, ring.normalize(64 + 5));
+        assertEquals(63, ring.normalize(-1));
+        assertEquals(-1L, new Ring(64).normalize(-1));
+    }
+
+    @Test
+    public void distanceWrapsAroundTheRing() {
+        Ring ring = new Ring(6);
+        assertEquals(10, ring.distance(50, 60));
+        assertEquals(14, ring.distance(60, 10));
+        assertEquals(0, ring.distance(7, 7));
+    }
+
+    @Test
+    public void distanceIsUnsignedWith64Bits() {
+        Ring ring = new Ring(64);
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE + 1;
+        assertEquals(2, ring.distance(from, to));
+        assertEquals(-2L, ring.distance(to, from)); //2^64 - 2
+    }
+
+    @Test
+    public void fingerStartWraps() {
+        Ring ring = new Ring(6);
+        assertEquals(61, ring.fingerStart(60, 0));
+        assertEquals(28, ring.fingerStart(60, 5));
+        assertEquals(Long.MIN_VALUE, new Ring(64).fingerStart(0, 63));
+        assertEquals(Long.MIN_VALUE + 4, new Ring(64).fingerStart(Long.MIN_VALUE + 4, 63) ^ Long.MIN_VALUE);
+    }
+
+    @Test
+    public void betweenExcludesBothEnds() {
+        Ring ring = new Ring(6);
+        assertTrue(ring.between(10, 11, 20));
+        assertFalse(ring.between(10, 10, 20));
+        assertFalse(ring.between(10, 20, 20));
+        assertTrue(ring.between(60, 2, 5));
+        assertFalse(ring.between(60, 30, 5));
+        assertFalse(ring.between(7, 3, 7));
+    }
+
+    @Test
+    public void betweenRightIncludedIncludesTheEnd() {
+        Ring ring = new Ring(6);
+        assertTrue(ring.betweenRightIncluded(10, 20, 20));
+        assertFalse(ring.betweenRightIncluded(10, 10, 20));
+        assertTrue(ring.betweenRightIncluded(60, 5, 5));
+        assertTrue(ring.betweenRightIncluded(7, 3, 7));
+        assertTrue(ring.betweenRightIncluded(7, 7, 7));
+    }
+
+    @Test
+    public void intervalsUseUnsignedOrderWith64Bits() {
+        Ring ring = new Ring(64);
+        long low = 5;
+        long high = -5; //2^64 - 5
+        assertTrue(ring.between(low, Long.MAX_VALUE, high));
+        assertTrue(ring.between(low, Long.MIN_VALUE, high));
+        assertFalse(ring.between(high, Long.MIN_VALUE, low));
+        assertTrue(ring.between(high, 0, low));
+        assertTrue(ring.betweenRightIncluded(high, low, low));
+    }
+}
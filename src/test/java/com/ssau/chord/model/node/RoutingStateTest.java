@@ -0,0 +1,113 @@
+package com.ssau.chord.model.node;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RoutingStateTest {
+    private static final Ring RING = new Ring(6);
+    private static final NodeRef SELF = node(10);
+
+    private static NodeRef node(long nodeId) {
+        return new NodeRef(nodeId, "10.0.0." + nodeId, 5000);
+    }
+
+    /**
+     * @return the state of SELF with the fingers set to the given nodes, from the first one
+     */
+    private static RoutingState withFingers(Ring ring, NodeInterface... fingers) {
+        RoutingState state = RoutingState.initial(SELF, ring);
+        for (int i = 0; i < fingers.length; i++)
+            state = state.withFinger(i, fingers[i]);
+        return state;
+    }
+
+    @Test
+    public void initialStateHasOnlyTheNode() {
+        RoutingState state = RoutingState.initial(SELF, RING);
+        assertEquals(Collections.singletonList(SELF), state.getSuccessorList());
+        assertNull(state.getPredecessor());
+        assertEquals(RING.getBits(), state.getFingerTable().size());
+        assertNull(state.closestPrecedingFinger(5));
+    }
+
+    @Test
+    public void closestPrecedingFingerIsTheNearestBeforeTheId() {
+        NodeRef f12 = node(12);
+        NodeRef f20 = node(20);
+        NodeRef f40 = node(40);
+        RoutingState state = withFingers(RING, f12, f12, f20, f20, f40, f40);
+        assertSame(f20, state.closestPrecedingFinger(30));
+        assertSame(f40, state.closestPrecedingFinger(41));
+        assertSame(f12, state.closestPrecedingFinger(20)); //the finger equal to id does not precede it
+        assertNull(state.closestPrecedingFinger(11));
+    }
+
+    @Test
+    public void closestPrecedingFingerWrapsAroundTheRing() {
+        NodeRef f50 = node(50);
+        NodeRef f2 = node(2);
+        RoutingState state = withFingers(RING, f50, f2);
+        assertSame(f2, state.closestPrecedingFinger(5));
+        assertSame(f50, state.closestPrecedingFinger(1));
+        assertNull(state.closestPrecedingFinger(10)); //id equal to the node: the interval is empty
+    }
+
+    @Test
+    public void closestPrecedingFingerIsUnsignedWith64Bits() {
+        Ring ring = new Ring(64);
+        NodeRef near = node(Long.MAX_VALUE);
+        NodeRef far = node(-2L); //after Long.MAX_VALUE going clockwise from 10
+        RoutingState state = withFingers(ring, near, far);
+        assertSame(near, state.closestPrecedingFinger(Long.MIN_VALUE));
+        assertSame(far, state.closestPrecedingFinger(-1L));
+    }
+
+    @Test
+    public void withMethodsDoNotChangeTheOriginal() {
+        RoutingState state = RoutingState.initial(SELF, RING);
+        NodeRef successor = node(20);
+        RoutingState changed = state.withSuccessor(successor).withPredecessor(node(5)).withFinger(0, successor);
+        assertSame(SELF, state.getSuccessor());
+        assertNull(state.getPredecessor());
+        assertSame(SELF, state.getFingerTable().get(0));
+        assertSame(successor, changed.getSuccessor());
+        assertEquals(5L, changed.getPredecessor().getNodeId().longValue());
+        assertSame(successor, changed.getFingerTable().get(0));
+    }
+
+    @Test
+    public void withPredecessorAndFingerKeepTheSuccessorList() {
+        RoutingState state = RoutingState.initial(SELF, RING).withSuccessorList(Arrays.asList(node(20), node(30)));
+        assertSame(state.getSuccessorList(), state.withPredecessor(node(5)).getSuccessorList());
+        assertSame(state.getSuccessorList(), state.withFinger(1, node(20)).getSuccessorList());
+    }
+
+    @Test
+    public void withoutNodeRemovesItEverywhere() {
+        NodeRef n20 = node(20);
+        NodeRef n30 = node(30);
+        RoutingState state = withFingers(RING, n20, n20, n30)
+                .withSuccessorList(Arrays.asList(n20, n30))
+                .withPredecessor(n20);
+        RoutingState without = state.withoutNode(20L, SELF);
+        assertEquals(Collections.singletonList(n30), without.getSuccessorList());
+        assertNull(without.getPredecessor());
+        assertSame(SELF, without.getFingerTable().get(0));
+        assertSame(SELF, without.getFingerTable().get(1));
+        assertSame(n30, without.getFingerTable().get(2));
+        assertSame(n30, without.closestPrecedingFinger(40));
+    }
+
+    @Test
+    public void withoutTheLastSuccessorLeavesTheNode() {
+        NodeRef n20 = node(20);
+        RoutingState state = RoutingState.initial(SELF, RING).withSuccessor(n20);
+        assertEquals(Collections.singletonList(SELF), state.withoutNode(20L, SELF).getSuccessorList());
+    }
+}
@@ -0,0 +1,100 @@
+package com.ssau.chord.model.start;
+
+import com.ssau.chord.model.node.Hash;
+import com.ssau.chord.model.node.Node;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Ring of nodes in this JVM over the LocalTransport: checks that it stabilizes and routes correctly
+ */
+public class LocalRingTest {
+    private static final int NODES = 8;
+    private static final int DIM = 16;
+
+    private static LocalRing ring;
+
+    @BeforeClass
+    public static void startRing() throws Exception {
+        System.setProperty("chord.update.fingerDelayMillis", "5");
+        System.setProperty("chord.update.roundDelayMillis", "50");
+        ring = LocalRing.start(NODES, DIM, 50);
+        assertTrue("ring not stable, wrong nodes: " + ring.wrongNodes(), ring.awaitStable(60000));
+    }
+
+    @Test
+    public void lookupsFindTheSuccessor() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            long id = random.nextInt(1 << DIM);
+            Node node = ring.getNodes().get(random.nextInt(ring.getNodes().size()));
+            assertEquals(ring.expectedSuccessor(id).getNodeId(), node.findSuccessor(id).getNodeId());
+        }
+    }
+
+    @Test
+    public void keysAreFoundFromEveryNode() throws Exception {
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            long key = random.nextInt(Integer.MAX_VALUE);
+            ring.getNodes().get(random.nextInt(ring.getNodes().size())).addKey(new AbstractMap.SimpleEntry<>(key, "v" + key));
+            for (Node node : ring.getNodes())
+                assertEquals("v" + key, node.findKey(key));
+        }
+    }
+
+    @Test
+    public void staleLocationCacheDoesNotLeaveACopy() throws Exception {
+        long newId = Hash.getHash().calculateHash(ring.nextIpAddress(), LocalRing.PORT);
+        Node oldOwner = ring.expectedSuccessor(newId);
+        long predecessorId = oldOwner.getPredecessor().getNodeId();
+        long before = keyInInterval(predecessorId, newId); //owned by the new node after its join
+        Node sender = null;
+        for (Node node : ring.getNodes())
+            if (node != oldOwner && node.getNodeId() != predecessorId)
+                sender = node;
+        sender.addKey(new AbstractMap.SimpleEntry<>(keyInInterval(predecessorId, oldOwner.getNodeId()), "cached"));
+
+        Node newNode = ring.addNode();
+        assertTrue(ring.awaitStable(60000));
+        sender.addKey(new AbstractMap.SimpleEntry<>(before, "moved"));
+        assertNull(oldOwner.retrieveKeyFromStore(before));
+        assertEquals("moved", newNode.retrieveKeyFromStore(before));
+    }
+
+    /**
+     * @return a key whose hash is in (from, to]
+     */
+    private static long keyInInterval(long from, long to) {
+        long width = (to - from) & ((1L << DIM) - 1);
+        for (long key = 0; ; key++)
+            if (((Hash.getHash().calculateKeyHash(key) - from - 1) & ((1L << DIM) - 1)) < width)
+                return key;
+    }
+
+    @Test
+    public void keysAreStoredOnlyOnTheirOwner() throws Exception {
+        Random random = new Random(3);
+        long[] keys = new long[50];
+        for (int round = 0; round < 2; round++) { //the second round goes through the location caches
+            for (int i = 0; i < keys.length; i++) {
+                if (round == 0)
+                    keys[i] = random.nextInt(Integer.MAX_VALUE);
+                ring.getNodes().get(random.nextInt(ring.getNodes().size())).addKey(new AbstractMap.SimpleEntry<>(keys[i], "w" + i));
+            }
+        }
+        for (long key : keys) {
+            Node owner = ring.expectedSuccessor(Hash.getHash().calculateKeyHash(key));
+            for (Node node : ring.getNodes())
+                if (node != owner)
+                    assertNull(node.retrieveKeyFromStore(key));
+        }
+    }
+}